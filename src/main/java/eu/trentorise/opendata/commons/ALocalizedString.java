@@ -15,6 +15,8 @@
  */
 package eu.trentorise.opendata.commons;
 
+import com.google.common.base.Preconditions;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Locale;
 import org.immutables.value.Value;
@@ -65,6 +67,53 @@ abstract class ALocalizedString implements Serializable {
         return getLocale();
     }
     
+    /**
+     * Appends the same text of {@link #toString()}, like
+     * {@code LocalizedString{locale=it, string=ciao}}, without building
+     * intermediate strings.
+     *
+     * @return the provided appendable
+     * @since 2.0
+     */
+    public <A extends Appendable> A appendTo(A appendable) throws IOException {
+        Preconditions.checkNotNull(appendable);
+        appendable.append("LocalizedString{locale=")
+                  .append(loc().toString())
+                  .append(", string=")
+                  .append(str())
+                  .append('}');
+        return appendable;
+    }
+
+    /**
+     * Appends the same text of {@link #toString()} without building
+     * intermediate strings.
+     *
+     * @return the provided builder
+     * @since 2.0
+     */
+    public StringBuilder appendTo(StringBuilder builder) {
+        try {
+            appendTo((Appendable) builder);
+        } catch (IOException ex) {
+            throw new IllegalStateException("StringBuilder shouldn't throw IOException!", ex);
+        }
+        return builder;
+    }
+
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder()).toString();
+    }
+
+    /**
+     * Localized strings are serialized in the compact form described in
+     * {@link Ser}.
+     */
+    protected Object writeReplace() {
+        return new Ser(Ser.LOCALIZED_STRING, this);
+    }
+
     /**
      * Returns a LocalizedString with default locale {@link Locale#ROOT}
      *
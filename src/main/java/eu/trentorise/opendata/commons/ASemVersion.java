@@ -15,6 +15,8 @@
  */
 package eu.trentorise.opendata.commons;
 
+import com.google.common.base.Preconditions;
+import java.io.IOException;
 import java.io.Serializable;
 import org.immutables.value.Value;
 
@@ -117,11 +119,51 @@ abstract class ASemVersion implements Serializable {
      */
     @Override
     public String toString() {
-        String ret = "" + getMajor() + "." + getMinor() + "." + getPatch();
+        return appendTo(new StringBuilder()).toString();
+    }
+
+    /**
+     * Appends the same string of {@link #toString()}, like i.e.
+     * 1.2.3-SNAPSHOT
+     *
+     * @return the provided appendable
+     * @since 2.0
+     */
+    public <A extends Appendable> A appendTo(A appendable) throws IOException {
+        Preconditions.checkNotNull(appendable);
+        if (appendable instanceof StringBuilder) {
+            appendTo((StringBuilder) appendable);
+            return appendable;
+        }
+        appendable.append(Integer.toString(getMajor()))
+                  .append('.')
+                  .append(Integer.toString(getMinor()))
+                  .append('.')
+                  .append(Integer.toString(getPatch()));
         if (getPreReleaseVersion().length() > 0) {
-            return ret + "-" + getPreReleaseVersion();
-        } else {
-            return ret;
+            appendable.append('-')
+                      .append(getPreReleaseVersion());
+        }
+        return appendable;
+    }
+
+    /**
+     * Appends the same string of {@link #toString()}, like i.e.
+     * 1.2.3-SNAPSHOT
+     *
+     * @return the provided builder
+     * @since 2.0
+     */
+    public StringBuilder appendTo(StringBuilder builder) {
+        builder.append(getMajor())
+               .append('.')
+               .append(getMinor())
+               .append('.')
+               .append(getPatch());
+        if (getPreReleaseVersion().length() > 0) {
+            builder.append('-')
+                   .append(getPreReleaseVersion());
         }
+        return builder;
     }
 }
@@ -20,10 +20,20 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.Multimap;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.text.Normalizer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import javax.annotation.concurrent.Immutable;
 import javax.annotation.concurrent.NotThreadSafe;
@@ -39,22 +49,95 @@ import javax.annotation.concurrent.NotThreadSafe;
  * To create {@code Dict} instances use {@code of(...)} methods.
  * </p>
  * 
+ * <p>
+ * Internally strings are kept in two parallel arrays (distinct locale ids from
+ * {@link LocaleRegistry} and the immutable list of strings of each locale)
+ * instead of a full Guava multimap, so a dict costs little more than its
+ * strings. Lists of strings are shared among dicts derived one from the
+ * other, so {@code with(...)} methods only copy the list of the locale they
+ * change. The multimap returned by {@link #asMultimap()} is only materialized
+ * when requested.
+ * </p>
+ * 
  * @author David Leoni <david.leoni@unitn.it>
  */
 @ParametersAreNonnullByDefault
 @Immutable
 public final class Dict implements Serializable {
 
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
+
+    private static final int[] NO_LOCALES = new int[0];
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static final ImmutableList<String>[] NO_STRINGS = new ImmutableList[0];
 
-    private static final Dict INSTANCE = new Dict();
+    private static final Dict INSTANCE = new Dict(NO_LOCALES, NO_STRINGS, 0);
 
     private static final int PADDING = 10;
 
-    private ImmutableListMultimap<Locale, String> strings;
+    /**
+     * Locales for which {@link String#toLowerCase(Locale)} doesn't behave like
+     * in {@link Locale#ROOT}
+     */
+    private static final Locale[] OWN_LOWER_CASE_LOCALES = new Locale[] { new Locale("tr"), new Locale("az"),
+            new Locale("lt") };
+
+    /**
+     * Distinct {@link LocaleRegistry} locale ids, in insertion order.
+     */
+    private final int[] localeIds;
+
+    /**
+     * Strings of {@code localeIds[i]} are in {@code strings[i]}, which is
+     * never empty. Arrays and lists may be shared with other dicts.
+     */
+    private final ImmutableList<String>[] strings;
+
+    /**
+     * Sum of the {@link #entryHash(int, ImmutableList) entry hashes}, computed
+     * at construction.
+     */
+    private final int mapHash;
+
+    @Nullable
+    private transient volatile ImmutableListMultimap<Locale, String> multimap;
+
+    /**
+     * All the strings lowercased according to their locale, in the same
+     * order of {@link #strings}. Built on first {@link #contains(String)}.
+     */
+    @Nullable
+    private transient volatile String[] lowerCaseStrings;
 
-    private Dict() {
-        strings = ImmutableListMultimap.of();
+    private Dict(int[] localeIds, ImmutableList<String>[] strings, int mapHash) {
+        this.localeIds = localeIds;
+        this.strings = strings;
+        this.mapHash = mapHash;
+    }
+
+    /**
+     * Creates a dict which takes ownership of the provided arrays. Locale ids
+     * must be distinct and string lists non empty.
+     */
+    static Dict ofArrays(int[] localeIds, ImmutableList<String>[] strings) {
+        if (localeIds.length == 0) {
+            return INSTANCE;
+        }
+        int mapHash = 0;
+        for (int i = 0; i < localeIds.length; i++) {
+            mapHash += entryHash(localeIds[i], strings[i]);
+        }
+        return new Dict(localeIds, strings, mapHash);
+    }
+
+    /**
+     * Hash of a locale with its strings, as the one of a multimap entry
+     */
+    private static int entryHash(int localeId, ImmutableList<String> strings) {
+        return LocaleRegistry.locale(localeId)
+                             .hashCode()
+                ^ strings.hashCode();
     }
 
     /**
@@ -73,18 +156,26 @@ public final class Dict implements Serializable {
      *            if locale is unknown use {@link Locale#ROOT}
      */
     public static Dict of(Locale locale, String... strings) {
-        Dict ret = new Dict();
-        ret.strings = ImmutableListMultimap.<Locale, String> builder()
-                                           .putAll(locale, strings)
-                                           .build();
-        return ret;
+        return Dict.builder()
+                   .put(locale, strings)
+                   .build();
     }
 
     /**
-     * Returns the underlying multimap dictionary.
+     * Returns the dictionary as a multimap. The multimap is built on first
+     * request and then cached.
      */
     public ImmutableListMultimap<Locale, String> asMultimap() {
-        return strings;
+        ImmutableListMultimap<Locale, String> ret = multimap;
+        if (ret == null) {
+            ImmutableListMultimap.Builder<Locale, String> retb = ImmutableListMultimap.builder();
+            for (int i = 0; i < localeIds.length; i++) {
+                retb.putAll(locale(i), strings[i]);
+            }
+            ret = retb.build();
+            multimap = ret;
+        }
+        return ret;
     }
 
     /**
@@ -118,11 +209,9 @@ public final class Dict implements Serializable {
      *            if locale is unknown use {@link Locale#ROOT}
      */
     public static Dict of(Locale locale, Iterable<String> strings) {
-        Dict ret = new Dict();
-        ret.strings = ImmutableListMultimap.<Locale, String> builder()
-                                           .putAll(locale, strings)
-                                           .build();
-        return ret;
+        return Dict.builder()
+                   .put(locale, strings)
+                   .build();
     }
 
     /**
@@ -132,8 +221,57 @@ public final class Dict implements Serializable {
         return Dict.of(localizedString.loc(), localizedString.str());
     }
 
-    private Dict(Builder dictBuilder) {
-        this.strings = dictBuilder.stringsBuilder.build();
+    /**
+     * Returns the position of given locale in {@link #localeIds}, or -1 if not
+     * found.
+     */
+    private int indexOf(Locale locale) {
+        int id = LocaleRegistry.idIfPresent(locale);
+        return id < 0 ? -1 : indexOfId(id);
+    }
+
+    /**
+     * Returns the position of given locale id in {@link #localeIds}, or -1 if
+     * not found.
+     */
+    int indexOfId(int localeId) {
+        for (int i = 0; i < localeIds.length; i++) {
+            if (localeIds[i] == localeId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the canonical locale at position {@code i} in
+     * {@link #localeIds}
+     */
+    private Locale locale(int i) {
+        return LocaleRegistry.locale(localeIds[i]);
+    }
+
+    /**
+     * Returns the number of locales in the dict
+     */
+    int localeCount() {
+        return localeIds.length;
+    }
+
+    /**
+     * Returns the {@link LocaleRegistry} id of the locale at position
+     * {@code i}, with {@code 0 <= i < } {@link #localeCount()}
+     */
+    int localeIdAt(int i) {
+        return localeIds[i];
+    }
+
+    /**
+     * Returns the strings of the locale at position {@code i}, with
+     * {@code 0 <= i < } {@link #localeCount()}. Returned list is never empty.
+     */
+    ImmutableList<String> stringsAt(int i) {
+        return strings[i];
     }
 
     /**
@@ -148,7 +286,12 @@ public final class Dict implements Serializable {
      * @since 1.1
      */
     public ImmutableList<String> get(Locale locale) {
-        return strings.get(locale);
+        Preconditions.checkNotNull(locale);
+        int i = indexOf(locale);
+        if (i < 0) {
+            return ImmutableList.of();
+        }
+        return strings[i];
     }
 
     /**
@@ -164,7 +307,7 @@ public final class Dict implements Serializable {
      * @see #string(java.util.Locale)
      */
     public ImmutableList<String> strings(Locale locale) {
-        return strings.get(locale);
+        return get(locale);
     }
 
     /**
@@ -179,11 +322,12 @@ public final class Dict implements Serializable {
      * @since 1.1
      */
     public String str(Locale locale) {
-        List<String> rets = strings(locale);
-        if (rets.isEmpty()) {
+        Preconditions.checkNotNull(locale);
+        int i = indexOf(locale);
+        if (i < 0) {
             return "";
         } else {
-            return rets.get(0);
+            return strings[i].get(0);
         }
     }
 
@@ -206,9 +350,8 @@ public final class Dict implements Serializable {
      * returns false
      */
     public boolean isEmpty() {
-        for (Locale locale : locales()) {
-            String t = nonEmptyString(locale);
-            if (!t.isEmpty()) {
+        for (int i = 0; i < strings.length; i++) {
+            if (!nonEmptyString(i).isEmpty()) {
                 return false;
             }
         }
@@ -221,13 +364,22 @@ public final class Dict implements Serializable {
      * @return the available locales
      */
     public ImmutableSet<Locale> locales() {
-        return strings.keySet();
+        ImmutableListMultimap<Locale, String> m = multimap;
+        if (m != null) {
+            return m.keySet();
+        }
+        ImmutableSet.Builder<Locale> retb = ImmutableSet.builder();
+        for (int i = 0; i < localeIds.length; i++) {
+            retb.add(locale(i));
+        }
+        return retb.build();
     }
 
     /**
      * Checks if provided text is contained in any of the provided translations.
      * Both text and translations to check are lowercased according to their
-     * locale.
+     * locale. Lowercased translations are computed on first call and then
+     * cached.
      *
      * @param text
      *            the text to search for
@@ -235,19 +387,104 @@ public final class Dict implements Serializable {
      *         otherwise
      */
     public boolean contains(String text) {
+        return contains(text, null);
+    }
+
+    /**
+     * Same as {@link #contains(String)}, but only translations in the
+     * provided {@link LocaleRegistry} locale ids are checked.
+     *
+     * @param localeIds
+     *            if null all locales are checked
+     */
+    boolean contains(String text, @Nullable BitSet localeIds) {
         Preconditions.checkNotNull(text);
-        for (Locale loc : locales()) {
-            String lowText = text.toLowerCase(loc);
-            for (String t : strings.get(loc)) {
-                if (t.toLowerCase(loc)
-                     .contains(lowText)) {
+        String[] lows = lowerCaseStrings();
+        String rootLowText = null;
+        int k = 0;
+        for (int i = 0; i < this.localeIds.length; i++) {
+            int n = strings[i].size();
+            if (localeIds != null && !localeIds.get(this.localeIds[i])) {
+                k += n;
+                continue;
+            }
+            Locale loc = locale(i);
+            String lowText;
+            if (hasOwnLowerCase(loc)) {
+                lowText = text.toLowerCase(loc);
+            } else {
+                if (rootLowText == null) {
+                    rootLowText = text.toLowerCase(Locale.ROOT);
+                }
+                lowText = rootLowText;
+            }
+            for (int j = 0; j < n; j++) {
+                if (lows[k + j].contains(lowText)) {
                     return true;
                 }
             }
+            k += n;
+        }
+        return false;
+    }
+
+    private String[] lowerCaseStrings() {
+        String[] ret = lowerCaseStrings;
+        if (ret == null) {
+            int n = 0;
+            for (ImmutableList<String> strs : strings) {
+                n += strs.size();
+            }
+            ret = new String[n];
+            int k = 0;
+            for (int i = 0; i < localeIds.length; i++) {
+                Locale loc = locale(i);
+                for (String s : strings[i]) {
+                    ret[k++] = s.toLowerCase(loc);
+                }
+            }
+            lowerCaseStrings = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns true if {@link String#toLowerCase(Locale)} gives different
+     * results in provided locale than in {@link Locale#ROOT} (it only happens
+     * for Turkish, Azerbaijani and Lithuanian).
+     */
+    static boolean hasOwnLowerCase(Locale locale) {
+        String lang = locale.getLanguage();
+        for (Locale loc : OWN_LOWER_CASE_LOCALES) {
+            if (loc.getLanguage().equals(lang)) {
+                return true;
+            }
         }
         return false;
     }
 
+    /**
+     * Returns the distinct lowercase forms {@link #contains(String)} may give
+     * to the text, the {@link Locale#ROOT} one first.
+     */
+    static List<String> lowerCaseForms(String text) {
+        String rootLowText = text.toLowerCase(Locale.ROOT);
+        List<String> ret = null;
+        for (Locale loc : OWN_LOWER_CASE_LOCALES) {
+            String lowText = text.toLowerCase(loc);
+            if (!lowText.equals(rootLowText)) {
+                if (ret == null) {
+                    ret = new ArrayList<String>();
+                    ret.add(rootLowText);
+                }
+                if (!ret.contains(lowText)) {
+                    ret.add(lowText);
+                }
+            }
+        }
+        return ret == null ? ImmutableList.of(rootLowText) : ret;
+    }
+
     /**
      * Returns the first non empty string in the given locale. If it can't find
      * it, an empty string is returned.
@@ -258,13 +495,20 @@ public final class Dict implements Serializable {
      */
     public String nonEmptyString(Locale locale) {
         Preconditions.checkNotNull(locale);
+        int i = indexOf(locale);
+        return i < 0 ? "" : nonEmptyString(i);
+    }
 
-        for (String s : strings(locale)) {
+    /**
+     * Returns the first non empty string of the locale at position {@code i}
+     * in {@link #localeIds}, or the empty string if there is none.
+     */
+    private String nonEmptyString(int i) {
+        for (String s : strings[i]) {
             if (!s.isEmpty()) {
                 return s;
             }
         }
-
         return "";
     }
 
@@ -325,19 +569,77 @@ public final class Dict implements Serializable {
                 return LocalizedString.of(loc, t);
             }
         }
-        String t = nonEmptyString(Locale.ENGLISH);
-        if (!t.isEmpty()) {
-            return LocalizedString.of(Locale.ENGLISH, t);
-        }
+        return someDefault();
+    }
 
-        for (Locale loc : locales()) {
-            String other = nonEmptyString(loc);
-            if (!other.isEmpty()) {
-                return LocalizedString.of(loc, other);
+    /**
+     * Tries its best to return a meaningful string following the provided
+     * locale fallback chain. Works like {@link #some(java.lang.Iterable)}
+     * with the locales of the chain, but without walking them again: each
+     * locale of the chain is looked up by its precomputed id.
+     *
+     * @since 2.0
+     */
+    public LocalizedString some(LocaleFallback fallback) {
+        Preconditions.checkNotNull(fallback);
+        int i = someIndex(fallback);
+        return i < 0 ? LocalizedString.of() : LocalizedString.of(locale(i), nonEmptyString(i));
+    }
+
+    /**
+     * Returns the position in {@link #localeIds} of the locale chosen by
+     * {@link #some(LocaleFallback)}, or -1 if the dict has no non empty
+     * string.
+     */
+    int someIndex(LocaleFallback fallback) {
+        for (int k = 0; k < fallback.size(); k++) {
+            int i = indexOfId(fallback.localeIdAt(k));
+            if (i >= 0 && !nonEmptyString(i).isEmpty()) {
+                return i;
             }
         }
-        return LocalizedString.of();
+        return someDefaultIndex();
+    }
+
+    /**
+     * Returns {@link #some(LocaleFallback) some(fallback)} of each provided
+     * dict, in the same order.
+     *
+     * @since 2.0
+     */
+    public static ImmutableList<LocalizedString> someAll(Collection<Dict> dicts, LocaleFallback fallback) {
+        Preconditions.checkNotNull(fallback);
+        ImmutableList.Builder<LocalizedString> retb = ImmutableList.builder();
+        for (Dict dict : dicts) {
+            retb.add(dict.some(fallback));
+        }
+        return retb.build();
+    }
+
+    /**
+     * Returns a string in English if any, otherwise the first non-empty string
+     * in the dict, otherwise {@link LocalizedString#of()}
+     */
+    private LocalizedString someDefault() {
+        int i = someDefaultIndex();
+        return i < 0 ? LocalizedString.of() : LocalizedString.of(locale(i), nonEmptyString(i));
+    }
 
+    /**
+     * Returns the position in {@link #localeIds} of English if it has a non
+     * empty string, otherwise of the first locale having one, otherwise -1
+     */
+    private int someDefaultIndex() {
+        int en = indexOfId(LocaleRegistry.ENGLISH_ID);
+        if (en >= 0 && !nonEmptyString(en).isEmpty()) {
+            return en;
+        }
+        for (int i = 0; i < localeIds.length; i++) {
+            if (!nonEmptyString(i).isEmpty()) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     /**
@@ -363,10 +665,7 @@ public final class Dict implements Serializable {
      *
      */
     public Dict with(Locale locale, String... strings) {
-        return Dict.builder()
-                   .put(this)
-                   .put(locale, strings)
-                   .build();
+        return with(locale, Arrays.asList(strings));
     }
 
     /**
@@ -380,10 +679,7 @@ public final class Dict implements Serializable {
      *
      */
     public Dict with(String... strings) {
-        return Dict.builder()
-                   .put(this)
-                   .put(Locale.ROOT, strings)
-                   .build();
+        return with(Locale.ROOT, strings);
     }
 
     /**
@@ -398,10 +694,28 @@ public final class Dict implements Serializable {
      *
      */
     public Dict with(Locale locale, Iterable<String> strings) {
-        return Dict.builder()
-                   .put(this)
-                   .put(locale, strings)
-                   .build();
+        int localeId = LocaleRegistry.id(locale);
+        ImmutableList<String> added = ImmutableList.copyOf(strings);
+        if (added.isEmpty()) {
+            return this;
+        }
+        int i = indexOfId(localeId);
+        if (i < 0) {
+            int n = localeIds.length;
+            int[] newLocaleIds = Arrays.copyOf(localeIds, n + 1);
+            ImmutableList<String>[] newStrings = Arrays.copyOf(this.strings, n + 1);
+            newLocaleIds[n] = localeId;
+            newStrings[n] = added;
+            return new Dict(newLocaleIds, newStrings, mapHash + entryHash(localeId, added));
+        } else {
+            ImmutableList<String>[] newStrings = this.strings.clone();
+            newStrings[i] = ImmutableList.<String> builder()
+                                         .addAll(this.strings[i])
+                                         .addAll(added)
+                                         .build();
+            return new Dict(localeIds, newStrings, mapHash - entryHash(localeId, this.strings[i])
+                    + entryHash(localeId, newStrings[i]));
+        }
     }
 
     /**
@@ -412,6 +726,12 @@ public final class Dict implements Serializable {
      *
      */
     public Dict with(Dict dict) {
+        if (dict.localeIds.length == 0) {
+            return this;
+        }
+        if (localeIds.length == 0) {
+            return dict;
+        }
         return Dict.builder()
                    .put(this)
                    .put(dict)
@@ -419,25 +739,110 @@ public final class Dict implements Serializable {
     }
 
     /**
-     * Returns a string with msg padded with white spaces from the left until
-     * maxLength is reached
+     * Returns the changes needed to turn this dict into the provided one.
+     * Only changed locales are in the patch, each with the range of strings
+     * between the common prefix and the common suffix of the old and new
+     * strings.
+     *
+     * @see #apply(DictPatch)
+     * @since 2.0
+     */
+    public DictPatch diff(Dict other) {
+        Preconditions.checkNotNull(other);
+        if (this == other) {
+            return DictPatch.of();
+        }
+        List<DictPatch.Edit> edits = new ArrayList<DictPatch.Edit>();
+        for (int i = 0; i < localeIds.length; i++) {
+            int k = other.indexOfId(localeIds[i]);
+            DictPatch.Edit edit = DictPatch.edit(locale(i), strings[i],
+                    k < 0 ? ImmutableList.<String> of() : other.strings[k]);
+            if (edit != null) {
+                edits.add(edit);
+            }
+        }
+        for (int k = 0; k < other.localeIds.length; k++) {
+            if (indexOfId(other.localeIds[k]) < 0) {
+                edits.add(DictPatch.edit(other.locale(k), ImmutableList.<String> of(), other.strings[k]));
+            }
+        }
+        return DictPatch.of(edits);
+    }
+
+    /**
+     * Returns a new dict with the changes of the provided patch. Untouched
+     * locales share their strings with this dict, locales left without
+     * strings are removed and new locales follow existing ones.
+     *
+     * @throws IllegalArgumentException
+     *             if the strings the patch removes are not found in this dict
+     *             at the expected positions.
+     * @see #diff(Dict)
+     * @since 2.0
+     */
+    public Dict apply(DictPatch patch) {
+        Preconditions.checkNotNull(patch);
+        if (patch.isEmpty()) {
+            return this;
+        }
+        int n = localeIds.length;
+        int[] newLocaleIds = Arrays.copyOf(localeIds, n + patch.edits()
+                                                              .size());
+        ImmutableList<String>[] newStrings = Arrays.copyOf(strings, newLocaleIds.length);
+        for (DictPatch.Edit edit : patch.edits()) {
+            int localeId = LocaleRegistry.id(edit.locale());
+            int i = indexOfId(localeId);
+            ImmutableList<String> old = i < 0 ? ImmutableList.<String> of() : strings[i];
+            int end = edit.position() + edit.removed()
+                                            .size();
+            if (end > old.size() || !old.subList(edit.position(), end)
+                                        .equals(edit.removed())) {
+                throw new IllegalArgumentException("Patch doesn't apply, couldn't find strings " + edit.removed()
+                        + " at position " + edit.position() + " for locale " + edit.locale());
+            }
+            ImmutableList<String> replaced = ImmutableList.<String> builder()
+                                                          .addAll(old.subList(0, edit.position()))
+                                                          .addAll(edit.added())
+                                                          .addAll(old.subList(end, old.size()))
+                                                          .build();
+            if (i < 0) {
+                i = n++;
+                newLocaleIds[i] = localeId;
+            }
+            newStrings[i] = replaced;
+        }
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            if (!newStrings[i].isEmpty()) {
+                newLocaleIds[k] = newLocaleIds[i];
+                newStrings[k] = newStrings[i];
+                k++;
+            }
+        }
+        return ofArrays(Arrays.copyOf(newLocaleIds, k), Arrays.copyOf(newStrings, k));
+    }
+
+    /**
+     * Appends msg padded with white spaces from the left until maxLength is
+     * reached
      *
      * @param msg
      *            the message to pad with spaces
      * @param maxLength
      *            length after which msg is truncated
-     * @return the padded msg
      */
-    private static String padLeft(String msg, int maxLength) {
+    private static void padLeft(String msg, int maxLength, Appendable out) throws IOException {
         Preconditions.checkNotNull(msg);
 
-        String nmot;
         if (msg.length() > maxLength) {
-            nmot = msg.substring(0, msg.length() - 3) + "...";
+            out.append(msg, 0, msg.length() - 3)
+               .append("...");
         } else {
-            nmot = String.format("%" + maxLength + "s", msg);
+            for (int i = msg.length(); i < maxLength; i++) {
+                out.append(' ');
+            }
+            out.append(msg);
         }
-        return nmot;
     }
 
     /**
@@ -446,14 +851,158 @@ public final class Dict implements Serializable {
      * <p>
      * <em>Builder is not thread safe and generally should not be stored in
      * field or collection, but used immediately to create instances.</em>
+     * <p>
+     * For bulk ingestion the same builder can be presized with
+     * {@link Dict#builder(int, int)} and reused for many dicts by calling
+     * {@link #reset()} after each {@link #build()}, so its internal storage is
+     * allocated only once.
+     * <p>
+     * Builders switched to {@link #normalizing()} mode also trim and
+     * normalize to NFC the strings they are given, so harvested strings which
+     * only differ in whitespace or Unicode composition make equal dicts.
      */
     @NotThreadSafe
     public static final class Builder {
 
-        private Builder() {
+        private static final int DEFAULT_LOCALES = 4;
+
+        private static final int DEFAULT_STRINGS_PER_LOCALE = 2;
+
+        /**
+         * Strings made only of chars before this one are always in NFC form
+         */
+        private static final char FIRST_COMBINING_MARK = '\u0300';
+
+        private final int stringsPerLocale;
+
+        /**
+         * {@link LocaleRegistry} locale ids, in insertion order
+         */
+        private int[] localeIds;
+
+        /**
+         * Strings of {@code localeIds[i]}. Lists taken from other dicts are
+         * immutable and shared, the others are from {@link #spareStrings}.
+         */
+        private List<String>[] strings;
+
+        /**
+         * Modifiable lists owned by the builder, kept across resets.
+         */
+        private ArrayList<String>[] spareStrings;
+
+        private int localeCount = 0;
+
+        private int size = 0;
+
+        private boolean normalizing = false;
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private Builder(int expectedLocales, int stringsPerLocale) {
+            this.stringsPerLocale = stringsPerLocale;
+            this.localeIds = new int[expectedLocales];
+            this.strings = new List[expectedLocales];
+            this.spareStrings = new ArrayList[expectedLocales];
+        }
+
+        /**
+         * Returns a modifiable list of strings for the given locale. Lists
+         * taken from other dicts are immutable and get copied only here, when
+         * something needs to be appended to them.
+         */
+        private List<String> stringsOf(int localeId) {
+            int i = indexOfId(localeId);
+            if (i < 0) {
+                i = addLocale(localeId);
+                strings[i] = spareStrings(i);
+            } else if (strings[i] instanceof ImmutableList) {
+                ArrayList<String> strs = spareStrings(i);
+                strs.addAll(strings[i]);
+                strings[i] = strs;
+            }
+            return strings[i];
+        }
+
+        private int indexOfId(int localeId) {
+            for (int i = 0; i < localeCount; i++) {
+                if (localeIds[i] == localeId) {
+                    return i;
+                }
+            }
+            return -1;
         }
 
-        private ImmutableListMultimap.Builder<Locale, String> stringsBuilder = ImmutableListMultimap.<Locale, String> builder();
+        /**
+         * Adds a slot for the given locale, growing storage if needed.
+         *
+         * @return the position of the slot
+         */
+        private int addLocale(int localeId) {
+            if (localeCount == localeIds.length) {
+                int n = Math.max(DEFAULT_LOCALES, localeCount * 2);
+                localeIds = Arrays.copyOf(localeIds, n);
+                strings = Arrays.copyOf(strings, n);
+                spareStrings = Arrays.copyOf(spareStrings, n);
+            }
+            localeIds[localeCount] = localeId;
+            return localeCount++;
+        }
+
+        /**
+         * Returns the empty modifiable list of slot {@code i}
+         */
+        private ArrayList<String> spareStrings(int i) {
+            ArrayList<String> ret = spareStrings[i];
+            if (ret == null) {
+                ret = new ArrayList<String>(stringsPerLocale);
+                spareStrings[i] = ret;
+            }
+            return ret;
+        }
+
+        /**
+         * Switches the builder to normalizing mode: from now on, strings are
+         * trimmed of leading and trailing whitespace and normalized to
+         * {@link Normalizer.Form#NFC NFC} as they are put, including the
+         * strings of dicts put with {@link #put(Dict)}. The mode is kept
+         * across {@link #reset()}s.
+         *
+         * @return {@code this} builder for chained invocation
+         * @since 2.0
+         */
+        public Builder normalizing() {
+            normalizing = true;
+            return this;
+        }
+
+        /**
+         * Returns the string to store for {@code str}, which is the string
+         * itself unless in normalizing mode.
+         */
+        private String store(String str) {
+            Preconditions.checkNotNull(str);
+            return normalizing ? normalize(str) : str;
+        }
+
+        /**
+         * Clears the builder so it can be used to build another dict. Storage
+         * allocated so far is kept, so builders reused for similar dicts
+         * don't need to allocate anything but the built dicts.
+         *
+         * @return {@code this} builder for chained invocation
+         * @since 2.0
+         */
+        public Builder reset() {
+            for (int i = 0; i < localeCount; i++) {
+                if (strings[i] == spareStrings[i]) {
+                    spareStrings[i].clear();
+                }
+                strings[i] = null;
+            }
+            localeCount = 0;
+            size = 0;
+            return this;
+        }
 
         /**
          * Stores an array of values with the same locale in the built
@@ -467,7 +1016,11 @@ public final class Dict implements Serializable {
          * @return {@code this} builder for chained invocation
          */
         public Builder put(Locale locale, String... strings) {
-            stringsBuilder.putAll(locale, strings);
+            List<String> strs = stringsOf(LocaleRegistry.id(locale));
+            for (String str : strings) {
+                strs.add(store(str));
+                size++;
+            }
             return this;
         }
 
@@ -475,7 +1028,28 @@ public final class Dict implements Serializable {
          * Returns an immutable dictionary.
          */
         public Dict build() {
-            return new Dict(this);
+            if (size == 0) {
+                return INSTANCE;
+            }
+            int n = 0;
+            for (int k = 0; k < localeCount; k++) {
+                if (!this.strings[k].isEmpty()) {
+                    n++;
+                }
+            }
+            int[] localeIds = new int[n];
+            @SuppressWarnings({ "unchecked", "rawtypes" })
+            ImmutableList<String>[] strings = new ImmutableList[n];
+            int i = 0;
+            for (int k = 0; k < localeCount; k++) {
+                List<String> strs = this.strings[k];
+                if (!strs.isEmpty()) {
+                    localeIds[i] = this.localeIds[k];
+                    strings[i] = ImmutableList.copyOf(strs);
+                    i++;
+                }
+            }
+            return ofArrays(localeIds, strings);
         }
 
         /**
@@ -490,7 +1064,15 @@ public final class Dict implements Serializable {
          * @return {@code this} builder for chained invocation
          */
         public Builder put(Locale locale, Iterable<String> strings) {
-            stringsBuilder.putAll(locale, strings);
+            return put(LocaleRegistry.id(locale), strings);
+        }
+
+        private Builder put(int localeId, Iterable<String> strings) {
+            List<String> strs = stringsOf(localeId);
+            for (String str : strings) {
+                strs.add(store(str));
+                size++;
+            }
             return this;
         }
 
@@ -502,8 +1084,7 @@ public final class Dict implements Serializable {
          * @return {@code this} builder for chained invocation
          */
         public Builder put(String... strings) {
-            stringsBuilder.putAll(Locale.ROOT, strings);
-            return this;
+            return put(Locale.ROOT, strings);
         }
 
         /**
@@ -511,20 +1092,92 @@ public final class Dict implements Serializable {
          * locales and strings follow any existing locales and strings.
          */
         public Builder put(Dict dict) {
-            stringsBuilder.putAll(dict.strings);
+            for (int i = 0; i < dict.localeIds.length; i++) {
+                int k = indexOfId(dict.localeIds[i]);
+                ImmutableList<String> strs = normalizing ? normalize(dict.strings[i]) : dict.strings[i];
+                if (k < 0 || strings[k].isEmpty()) {
+                    // shares the list, it will be copied only if needed
+                    if (k < 0) {
+                        k = addLocale(dict.localeIds[i]);
+                    }
+                    strings[k] = strs;
+                    size += strs.size();
+                } else {
+                    put(dict.localeIds[i], strs);
+                }
+            }
             return this;
         }
+
+        /**
+         * Returns the provided list if all of its strings are already
+         * normalized, otherwise a normalized copy.
+         */
+        private static ImmutableList<String> normalize(ImmutableList<String> strings) {
+            for (int j = 0; j < strings.size(); j++) {
+                String str = strings.get(j);
+                String normalized = normalize(str);
+                if (normalized != str) {
+                    String[] ret = strings.toArray(new String[strings.size()]);
+                    ret[j] = normalized;
+                    for (int k = j + 1; k < ret.length; k++) {
+                        ret[k] = normalize(ret[k]);
+                    }
+                    return ImmutableList.copyOf(ret);
+                }
+            }
+            return strings;
+        }
+
+        /**
+         * Returns the provided string trimmed and in NFC form, or the string
+         * itself if it already is. A single pass finds the whitespace to trim
+         * and checks if all chars come before the combining diacritical
+         * marks, in which case the string is surely in NFC and the
+         * {@link Normalizer} is not even called.
+         */
+        private static String normalize(String str) {
+            int n = str.length();
+            int start = 0;
+            while (start < n && isTrimmed(str.charAt(start))) {
+                start++;
+            }
+            int end = n;
+            while (end > start && isTrimmed(str.charAt(end - 1))) {
+                end--;
+            }
+            boolean simple = true;
+            for (int i = start; i < end && simple; i++) {
+                simple = str.charAt(i) < FIRST_COMBINING_MARK;
+            }
+            String ret = start == 0 && end == n ? str : str.substring(start, end);
+            if (simple || Normalizer.isNormalized(ret, Normalizer.Form.NFC)) {
+                return ret;
+            }
+            return Normalizer.normalize(ret, Normalizer.Form.NFC);
+        }
+
+        private static boolean isTrimmed(char c) {
+            return c <= ' ' || Character.isWhitespace(c) || Character.isSpaceChar(c);
+        }
     }
 
+    /**
+     * Hash is the same one the dict had when it was backed by a multimap. It
+     * is computed once at construction.
+     */
     @Override
     public int hashCode() {
         int hash = 7;
-        hash = 53 * hash + (this.strings != null ? this.strings.hashCode() : 0);
+        hash = 53 * hash + mapHash;
         return hash;
     }
 
     @Override
     public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
         if (obj == null) {
             return false;
         }
@@ -532,9 +1185,16 @@ public final class Dict implements Serializable {
             return false;
         }
         final Dict other = (Dict) obj;
-        if (this.strings != other.strings && (this.strings == null || !this.strings.equals(other.strings))) {
+        if (this.mapHash != other.mapHash || this.localeIds.length != other.localeIds.length) {
             return false;
         }
+        // locales order doesn't matter, strings order within a locale does
+        for (int i = 0; i < localeIds.length; i++) {
+            int k = other.indexOfId(localeIds[i]);
+            if (k < 0 || !strings[i].equals(other.strings[k])) {
+                return false;
+            }
+        }
         return true;
     }
 
@@ -544,7 +1204,23 @@ public final class Dict implements Serializable {
      * @return new Dict builder
      */
     public static Dict.Builder builder() {
-        return new Dict.Builder();
+        return new Dict.Builder(Builder.DEFAULT_LOCALES, Builder.DEFAULT_STRINGS_PER_LOCALE);
+    }
+
+    /**
+     * Creates builder for {@link Dict} presized for the expected number of
+     * locales and of strings per locale. Hints are not limits, the builder
+     * grows as needed.
+     *
+     * @return new Dict builder
+     * @since 2.0
+     */
+    public static Dict.Builder builder(int expectedLocales, int expectedStringsPerLocale) {
+        Preconditions.checkArgument(expectedLocales >= 0, "Expected locales can't be negative, found instead %s",
+                expectedLocales);
+        Preconditions.checkArgument(expectedStringsPerLocale >= 0,
+                "Expected strings per locale can't be negative, found instead %s", expectedStringsPerLocale);
+        return new Dict.Builder(expectedLocales, expectedStringsPerLocale);
     }
 
     /**
@@ -552,36 +1228,63 @@ public final class Dict implements Serializable {
      */
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("\n");
-        sb.append("{\n");
-        for (Locale loc : strings.keySet()) {
-            sb.append(padLeft(loc.toString(), PADDING))
-              .append(": [");
+        return appendTo(new StringBuilder()).toString();
+    }
+
+    /**
+     * Appends all the strings in the dictionary in the same format of
+     * {@link #toString()}, without building intermediate strings.
+     *
+     * @return the provided appendable
+     * @since 2.0
+     */
+    public <A extends Appendable> A appendTo(A appendable) throws IOException {
+        Preconditions.checkNotNull(appendable);
+        appendable.append("\n{\n");
+        for (int i = 0; i < localeIds.length; i++) {
+            padLeft(locale(i).toString(), PADDING, appendable);
+            appendable.append(": [");
             boolean first = true;
-            for (String t : strings.get(loc)) {
+            for (String t : strings[i]) {
                 if (first) {
                     first = false;
                 } else {
-                    sb.append(", ");
+                    appendable.append(", ");
                 }
-                sb.append(t);
+                appendable.append(t);
             }
-            sb.append("]\n");
+            appendable.append("]\n");
+        }
+        appendable.append("}\n\n");
+        return appendable;
+    }
 
+    /**
+     * Appends all the strings in the dictionary in the same format of
+     * {@link #toString()}, without building intermediate strings.
+     *
+     * @return the provided builder
+     * @since 2.0
+     */
+    public StringBuilder appendTo(StringBuilder builder) {
+        try {
+            appendTo((Appendable) builder);
+        } catch (IOException ex) {
+            throw new IllegalStateException("StringBuilder shouldn't throw IOException!", ex);
         }
-        sb.append("}\n");
-        sb.append("\n");
-        return sb.toString();
+        return builder;
     }
 
     /**
      * Returns a Dict with a copy of a Guava Multimap
      */
     public static Dict of(Multimap<Locale, String> multimap) {
-        Dict ret = new Dict();
-        ret.strings = ImmutableListMultimap.<Locale, String> copyOf(multimap);
-        return ret;
+        Dict.Builder retb = Dict.builder();
+        for (Map.Entry<Locale, Collection<String>> entry : multimap.asMap()
+                                                                   .entrySet()) {
+            retb.put(entry.getKey(), entry.getValue());
+        }
+        return retb.build();
     }
 
     /**
@@ -592,14 +1295,24 @@ public final class Dict implements Serializable {
     }
 
     /**
-     * Returns a new dictionary by merging all the provided dicts together
+     * Returns a new dictionary by merging all the provided dicts together.
+     * Locales and strings follow the order of the provided dicts.
      */
     public static Dict ofDicts(Iterable<Dict> dicts) {
-        Dict.Builder retb = Dict.builder();
-        for (Dict st : dicts) {
-            retb.put(st);
-        }
-        return retb.build();
+        return DictMerge.merge(dicts, null);
+    }
+
+    /**
+     * Returns a new dictionary by merging all the provided dicts together,
+     * splitting the work among the threads of the provided pool when there
+     * are many dicts. Locales and strings follow the order of the provided
+     * dicts, exactly as in {@link #ofDicts(Iterable)}.
+     *
+     * @since 2.0
+     */
+    public static Dict ofDicts(Iterable<Dict> dicts, ForkJoinPool pool) {
+        Preconditions.checkNotNull(pool);
+        return DictMerge.merge(dicts, pool);
     }
 
     /**
@@ -613,15 +1326,44 @@ public final class Dict implements Serializable {
         return dictb.build();
     }
 
+    /**
+     * Locale ids are only valid within a JVM, so dicts are serialized with
+     * language tags and strings in the compact form described in {@link Ser}.
+     */
+    private Object writeReplace() {
+        return new Ser(Ser.DICT, this);
+    }
+
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw new InvalidObjectException("Dict must be deserialized through its serialized form!");
+    }
+
+    /**
+     * Calls the provided consumer for each translation, in the same order of
+     * {@link #asLocalizedStrings()} but without creating any object.
+     *
+     * @since 2.0
+     */
+    public void forEach(DictEntryConsumer consumer) {
+        Preconditions.checkNotNull(consumer);
+        for (int i = 0; i < localeIds.length; i++) {
+            Locale loc = locale(i);
+            ImmutableList<String> strs = strings[i];
+            for (int j = 0; j < strs.size(); j++) {
+                consumer.accept(loc, j, strs.get(j));
+            }
+        }
+    }
+
     /**
      * Returns the dictionary as a list of localized strings
      */
     public ImmutableList<LocalizedString> asLocalizedStrings() {
         ImmutableList.Builder<LocalizedString> retb = ImmutableList.builder();
 
-        for (Locale locale : locales()) {
-            for (String s : get(locale)) {
-                retb.add(LocalizedString.of(locale, s));
+        for (int i = 0; i < localeIds.length; i++) {
+            for (String s : strings[i]) {
+                retb.add(LocalizedString.of(locale(i), s));
             }
         }
         return retb.build();
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Collects translations added concurrently by many threads, i.e. harvesters
+ * fetching the same entity from different sources, and turns them into a
+ * {@link Dict}. Unlike {@link Dict.Builder}, adding never blocks: each locale
+ * has its own lock free queue.
+ *
+ * <p>
+ * Since the order in which threads add translations is not predictable, dicts
+ * produced by {@link #toDict()} don't follow it: locales are sorted by their
+ * {@link Locale#toString() string form} and the strings of each locale in
+ * their natural order, duplicates included. So the same translations always
+ * give the same dict, and the preferred string returned by
+ * {@link Dict#str(Locale)} is the least one, not the first added.
+ * </p>
+ *
+ * @author David Leoni
+ * @since 2.0
+ */
+@ParametersAreNonnullByDefault
+@ThreadSafe
+public final class DictAccumulator {
+
+    private static final Comparator<Locale> LOCALE_ORDER = new Comparator<Locale>() {
+        @Override
+        public int compare(Locale locale1, Locale locale2) {
+            return locale1.toString()
+                          .compareTo(locale2.toString());
+        }
+    };
+
+    private final ConcurrentMap<Locale, Queue<String>> strings = new ConcurrentHashMap<Locale, Queue<String>>();
+
+    private DictAccumulator() {
+    }
+
+    /**
+     * Creates an empty accumulator
+     */
+    public static DictAccumulator of() {
+        return new DictAccumulator();
+    }
+
+    private Queue<String> queue(Locale locale) {
+        Queue<String> ret = strings.get(locale);
+        if (ret == null) {
+            Queue<String> queue = new ConcurrentLinkedQueue<String>();
+            ret = strings.putIfAbsent(LocaleRegistry.intern(locale), queue);
+            if (ret == null) {
+                ret = queue;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Adds the provided strings in the given locale. If any of them is null
+     * nothing is added.
+     */
+    public DictAccumulator add(Locale locale, String... strings) {
+        checkNotNull(locale);
+        checkNotNull(strings);
+        if (strings.length == 0) {
+            return this;
+        }
+        for (String s : strings) {
+            checkNotNull(s);
+        }
+        queue(locale).addAll(Arrays.asList(strings));
+        return this;
+    }
+
+    /**
+     * Adds the provided localized string
+     */
+    public DictAccumulator add(LocalizedString localizedString) {
+        checkNotNull(localizedString);
+        queue(localizedString.loc()).add(localizedString.str());
+        return this;
+    }
+
+    /**
+     * Adds all the translations of the provided dict
+     */
+    public DictAccumulator add(Dict dict) {
+        checkNotNull(dict);
+        for (int i = 0; i < dict.localeCount(); i++) {
+            queue(LocaleRegistry.locale(dict.localeIdAt(i))).addAll(dict.stringsAt(i));
+        }
+        return this;
+    }
+
+    /**
+     * Adds all the translations collected so far by another accumulator, i.e.
+     * one filled by a different group of threads.
+     */
+    public DictAccumulator combine(DictAccumulator other) {
+        checkNotNull(other);
+        for (Map.Entry<Locale, Queue<String>> entry : other.strings.entrySet()) {
+            queue(entry.getKey()).addAll(entry.getValue());
+        }
+        return this;
+    }
+
+    /**
+     * Returns a dict with the translations collected so far, sorted as
+     * described in the {@link DictAccumulator class docs}. Translations added
+     * while the dict is being built may or may not be included.
+     */
+    public Dict toDict() {
+        Locale[] locales = strings.keySet()
+                                  .toArray(new Locale[0]);
+        Arrays.sort(locales, LOCALE_ORDER);
+        Dict.Builder builder = Dict.builder(locales.length, 2);
+        for (Locale locale : locales) {
+            String[] strs = strings.get(locale)
+                                   .toArray(new String[0]);
+            Arrays.sort(strs);
+            builder.put(locale, strs);
+        }
+        return builder.build();
+    }
+
+    @Override
+    public String toString() {
+        return "DictAccumulator{" + strings + "}";
+    }
+}
@@ -0,0 +1,405 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import java.util.Arrays;
+import java.util.Locale;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A column of dicts, i.e. a multilingual column of a tabular dataset, stored
+ * in a few shared arrays instead of one {@link Dict} object per cell.
+ *
+ * <pre>
+ * DictColumn column = DictColumn.of();
+ * column.appendAll(dicts);
+ * String title = column.str(42, Locale.ITALIAN);
+ * </pre>
+ *
+ * <p>
+ * Each row is a range of locale slots, each slot a locale id and a range of
+ * strings, so a row with one translation costs three ints plus the reference
+ * to its string. Rows are read in place with {@link #str(int, Locale)},
+ * {@link #some(int, LocaleFallback)} or {@link #forEach(int, DictEntryConsumer)}
+ * and can be scanned a locale at a time with {@link #strs(Locale)}. Actual
+ * dicts are only created on {@link #get(int)}.
+ * </p>
+ *
+ * <p>
+ * When many rows share the same strings, a column created with
+ * {@link #of(DictStringPool)} stores int ids in a {@link DictStringPool}
+ * instead of string references, so each distinct string is kept once, front
+ * coded, at the price of decoding it on each read:
+ * </p>
+ *
+ * <pre>
+ * DictStringPool pool = DictStringPool.builder().add(dicts).build();
+ * DictColumn column = DictColumn.of(pool).appendAll(dicts);
+ * </pre>
+ *
+ * <p>
+ * Column is append only and not thread safe, if it is appended while read it
+ * must be externally synchronized.
+ * </p>
+ *
+ * @author David Leoni
+ * @since 2.0
+ */
+@ParametersAreNonnullByDefault
+@NotThreadSafe
+public final class DictColumn {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int rowCount = 0;
+
+    /**
+     * Slots of row r are in {@code [rowStarts[r], rowStarts[r + 1])}
+     */
+    private int[] rowStarts = new int[INITIAL_CAPACITY + 1];
+
+    private int slotCount = 0;
+
+    /**
+     * {@link LocaleRegistry} id of each slot
+     */
+    private int[] slotLocaleIds = new int[INITIAL_CAPACITY];
+
+    /**
+     * Strings of slot s are in {@code [slotStarts[s], slotStarts[s + 1])}
+     */
+    private int[] slotStarts = new int[INITIAL_CAPACITY + 1];
+
+    private int stringCount = 0;
+
+    /**
+     * Pool holding the strings, or null if they are in {@link #strings}
+     */
+    @Nullable
+    private final DictStringPool pool;
+
+    /**
+     * The strings, when there is no pool
+     */
+    private String[] strings;
+
+    /**
+     * Ids in {@link #pool} of the strings, when there is a pool
+     */
+    private int[] stringIds;
+
+    private DictColumn(@Nullable DictStringPool pool, int expectedStrings) {
+        this.pool = pool;
+        if (pool == null) {
+            this.strings = new String[expectedStrings];
+            this.stringIds = new int[0];
+        } else {
+            this.strings = new String[0];
+            this.stringIds = new int[expectedStrings];
+        }
+    }
+
+    /**
+     * Creates an empty column.
+     */
+    public static DictColumn of() {
+        return new DictColumn(null, INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates an empty column storing its strings as ids in the provided
+     * pool. Appended dicts can only have strings found in the pool.
+     *
+     * @since 2.0
+     */
+    public static DictColumn of(DictStringPool pool) {
+        return new DictColumn(checkNotNull(pool), INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates an empty column with room for the expected number of rows, locale
+     * slots and strings. Hints are not limits, the column grows as needed.
+     */
+    public static DictColumn of(int expectedRows, int expectedSlots, int expectedStrings) {
+        checkArgument(expectedRows >= 0, "Expected rows can't be negative, found instead %s", expectedRows);
+        checkArgument(expectedSlots >= 0, "Expected slots can't be negative, found instead %s", expectedSlots);
+        checkArgument(expectedStrings >= 0, "Expected strings can't be negative, found instead %s",
+                expectedStrings);
+        DictColumn ret = new DictColumn(null, expectedStrings);
+        ret.rowStarts = new int[expectedRows + 1];
+        ret.slotLocaleIds = new int[expectedSlots];
+        ret.slotStarts = new int[expectedSlots + 1];
+        return ret;
+    }
+
+    /**
+     * Appends a row with the provided dict.
+     *
+     * @return {@code this} column for chained invocation
+     * @throws IllegalArgumentException
+     *             if the column has a pool not holding some string of the
+     *             dict, in which case nothing is appended.
+     */
+    public DictColumn append(Dict dict) {
+        checkNotNull(dict);
+        int slots = dict.localeCount();
+        int n = 0;
+        for (int i = 0; i < slots; i++) {
+            n += dict.stringsAt(i)
+                     .size();
+        }
+        int[] ids = null;
+        if (pool != null) {
+            ids = new int[n];
+            int k = 0;
+            for (int i = 0; i < slots; i++) {
+                for (String str : dict.stringsAt(i)) {
+                    ids[k] = pool.id(str);
+                    checkArgument(ids[k] >= 0, "String is not in the pool: %s", str);
+                    k++;
+                }
+            }
+        }
+        ensureCapacity(rowCount + 1, slotCount + slots, stringCount + n);
+        int k = 0;
+        for (int i = 0; i < slots; i++) {
+            slotLocaleIds[slotCount] = dict.localeIdAt(i);
+            ImmutableList<String> strs = dict.stringsAt(i);
+            for (int j = 0; j < strs.size(); j++) {
+                if (ids == null) {
+                    strings[stringCount++] = strs.get(j);
+                } else {
+                    stringIds[stringCount++] = ids[k++];
+                }
+            }
+            slotStarts[++slotCount] = stringCount;
+        }
+        rowStarts[++rowCount] = slotCount;
+        return this;
+    }
+
+    /**
+     * Appends a row for each of the provided dicts.
+     *
+     * @return {@code this} column for chained invocation
+     */
+    public DictColumn appendAll(Iterable<Dict> dicts) {
+        checkNotNull(dicts);
+        for (Dict dict : dicts) {
+            append(dict);
+        }
+        return this;
+    }
+
+    private void ensureCapacity(int rows, int slots, int strs) {
+        if (rows + 1 > rowStarts.length) {
+            rowStarts = Arrays.copyOf(rowStarts, Math.max(rows + 1, rowStarts.length * 2));
+        }
+        if (slots > slotLocaleIds.length) {
+            int capacity = Math.max(slots, slotLocaleIds.length * 2);
+            slotLocaleIds = Arrays.copyOf(slotLocaleIds, capacity);
+            slotStarts = Arrays.copyOf(slotStarts, capacity + 1);
+        }
+        if (pool == null) {
+            if (strs > strings.length) {
+                strings = Arrays.copyOf(strings, Math.max(strs, strings.length * 2));
+            }
+        } else if (strs > stringIds.length) {
+            stringIds = Arrays.copyOf(stringIds, Math.max(strs, stringIds.length * 2));
+        }
+    }
+
+    /**
+     * Returns the j-th string of the column
+     */
+    private String string(int j) {
+        return pool == null ? strings[j] : pool.get(stringIds[j]);
+    }
+
+    /**
+     * Returns the number of rows
+     */
+    public int size() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the slot of the given locale in a row, or -1 if not found
+     */
+    private int slot(int row, int localeId) {
+        for (int s = rowStarts[row]; s < rowStarts[row + 1]; s++) {
+            if (slotLocaleIds[s] == localeId) {
+                return s;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the dict of a row. The dict is created at each call, to only
+     * read a few strings prefer the other accessors.
+     */
+    public Dict get(int row) {
+        checkElementIndex(row, rowCount);
+        int from = rowStarts[row];
+        int n = rowStarts[row + 1] - from;
+        int[] localeIds = Arrays.copyOfRange(slotLocaleIds, from, from + n);
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        ImmutableList<String>[] strs = new ImmutableList[n];
+        for (int i = 0; i < n; i++) {
+            String[] slotStrings = new String[slotStarts[from + i + 1] - slotStarts[from + i]];
+            for (int j = 0; j < slotStrings.length; j++) {
+                slotStrings[j] = string(slotStarts[from + i] + j);
+            }
+            strs[i] = ImmutableList.copyOf(slotStrings);
+        }
+        return Dict.ofArrays(localeIds, strs);
+    }
+
+    /**
+     * Returns the number of strings of a row in the given locale
+     */
+    public int count(int row, Locale locale) {
+        checkElementIndex(row, rowCount);
+        int s = slot(row, LocaleRegistry.idIfPresent(checkNotNull(locale)));
+        return s < 0 ? 0 : slotStarts[s + 1] - slotStarts[s];
+    }
+
+    /**
+     * Returns the i-th string of a row in the given locale, see
+     * {@link #count(int, Locale)}
+     */
+    public String get(int row, Locale locale, int i) {
+        checkElementIndex(row, rowCount);
+        int s = slot(row, LocaleRegistry.idIfPresent(checkNotNull(locale)));
+        checkElementIndex(i, s < 0 ? 0 : slotStarts[s + 1] - slotStarts[s]);
+        return string(slotStarts[s] + i);
+    }
+
+    /**
+     * Returns the first string of a row in the given locale, or the empty
+     * string if there is none, like {@link Dict#str(Locale)}.
+     */
+    public String str(int row, Locale locale) {
+        checkElementIndex(row, rowCount);
+        int s = slot(row, LocaleRegistry.idIfPresent(checkNotNull(locale)));
+        return s < 0 ? "" : string(slotStarts[s]);
+    }
+
+    /**
+     * Tries its best to return a meaningful string of a row following the
+     * provided locale fallback chain, like {@link Dict#some(LocaleFallback)}:
+     * if no locale of the chain has a non empty string, defaults to English
+     * and then to the first non empty string of the row.
+     *
+     * @return the string found, or {@link LocalizedString#of()} if there is
+     *         none.
+     */
+    public LocalizedString some(int row, LocaleFallback fallback) {
+        checkElementIndex(row, rowCount);
+        checkNotNull(fallback);
+        for (int k = 0; k < fallback.size(); k++) {
+            int s = slot(row, fallback.localeIdAt(k));
+            if (s >= 0) {
+                String t = nonEmptyString(s);
+                if (!t.isEmpty()) {
+                    return LocalizedString.of(LocaleRegistry.locale(slotLocaleIds[s]), t);
+                }
+            }
+        }
+        int en = slot(row, LocaleRegistry.ENGLISH_ID);
+        if (en >= 0) {
+            String t = nonEmptyString(en);
+            if (!t.isEmpty()) {
+                return LocalizedString.of(Locale.ENGLISH, t);
+            }
+        }
+        for (int s = rowStarts[row]; s < rowStarts[row + 1]; s++) {
+            String t = nonEmptyString(s);
+            if (!t.isEmpty()) {
+                return LocalizedString.of(LocaleRegistry.locale(slotLocaleIds[s]), t);
+            }
+        }
+        return LocalizedString.of();
+    }
+
+    /**
+     * Returns the first non empty string of a slot, or the empty string if
+     * there is none.
+     */
+    private String nonEmptyString(int s) {
+        for (int j = slotStarts[s]; j < slotStarts[s + 1]; j++) {
+            String str = string(j);
+            if (!str.isEmpty()) {
+                return str;
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Calls the provided consumer for each translation of a row, like
+     * {@link Dict#forEach(DictEntryConsumer)}.
+     */
+    public void forEach(int row, DictEntryConsumer consumer) {
+        checkElementIndex(row, rowCount);
+        checkNotNull(consumer);
+        for (int s = rowStarts[row]; s < rowStarts[row + 1]; s++) {
+            Locale locale = LocaleRegistry.locale(slotLocaleIds[s]);
+            for (int j = slotStarts[s]; j < slotStarts[s + 1]; j++) {
+                consumer.accept(locale, j - slotStarts[s], string(j));
+            }
+        }
+    }
+
+    /**
+     * Returns the first string of each row in the given locale, or the empty
+     * string for the rows not having it, in a single scan of the column.
+     */
+    public String[] strs(Locale locale) {
+        int localeId = LocaleRegistry.idIfPresent(checkNotNull(locale));
+        String[] ret = new String[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            int s = localeId < 0 ? -1 : slot(row, localeId);
+            ret[row] = s < 0 ? "" : string(slotStarts[s]);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns an estimate in bytes of the memory taken by the column, assuming
+     * a 64 bit JVM with compressed references. Strings themselves are not
+     * counted, while the pool, if any, is.
+     */
+    public long memoryFootprint() {
+        // references take as much as ints
+        return Footprints.intArray(rowStarts.length) + Footprints.intArray(slotLocaleIds.length)
+                + Footprints.intArray(slotStarts.length) + Footprints.intArray(strings.length)
+                + Footprints.intArray(stringIds.length) + (pool == null ? 0 : pool.memoryFootprint());
+    }
+
+    @Override
+    public String toString() {
+        return "DictColumn{size=" + rowCount + "}";
+    }
+}
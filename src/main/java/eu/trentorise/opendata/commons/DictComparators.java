@@ -0,0 +1,213 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Locale aware ordering of dicts by the string they would show to a user,
+ * that is {@link Dict#some(LocaleFallback) dict.some(fallback).str()}.
+ * Comparing strings with a {@link Collator} is expensive, so both the
+ * comparators and the bulk sorts provided here compute the
+ * {@link CollationKey} of each dict only once.
+ *
+ * <pre>
+ * DictComparators.sort(dicts, LocaleFallback.of(Locale.ITALIAN));
+ * </pre>
+ *
+ * @author David Leoni
+ * @since 2.0
+ */
+@ParametersAreNonnullByDefault
+public final class DictComparators {
+
+    /**
+     * Default maximum number of collation keys cached by a comparator
+     */
+    public static final int DEFAULT_MAX_CACHED_KEYS = 10000;
+
+    /**
+     * Minimum number of dicts worth a parallel task
+     */
+    private static final int MIN_CHUNK_SIZE = 1024;
+
+    private DictComparators() {
+    }
+
+    /**
+     * Returns a comparator ordering dicts by their string for the given
+     * fallback chain, collated by a collator for the first locale of the
+     * chain. At most {@link #DEFAULT_MAX_CACHED_KEYS} collation keys are
+     * cached.
+     */
+    public static Comparator<Dict> comparator(LocaleFallback fallback) {
+        return comparator(fallback, defaultCollator(fallback), DEFAULT_MAX_CACHED_KEYS);
+    }
+
+    /**
+     * Returns a comparator ordering dicts by their string for the given
+     * fallback chain, collated by the provided collator, which is copied.
+     * Collation keys are computed once per dict and cached, evicting the least
+     * recently used when there are more than {@code maxCachedKeys}. Dicts are
+     * cached by identity and only as long as they are referenced elsewhere.
+     * The comparator is thread safe.
+     */
+    public static Comparator<Dict> comparator(final LocaleFallback fallback, Collator collator, int maxCachedKeys) {
+        checkNotNull(fallback);
+        checkArgument(maxCachedKeys > 0, "Max cached keys must be positive, found instead %s", maxCachedKeys);
+        final Collator clone = (Collator) collator.clone();
+        final Cache<Dict, CollationKey> keys = CacheBuilder.newBuilder()
+                                                           .weakKeys()
+                                                           .maximumSize(maxCachedKeys)
+                                                           .build();
+        return new Comparator<Dict>() {
+            @Override
+            public int compare(Dict dict1, Dict dict2) {
+                return collationKey(dict1, fallback, clone, keys).compareTo(
+                        collationKey(dict2, fallback, clone, keys));
+            }
+        };
+    }
+
+    private static Collator defaultCollator(LocaleFallback fallback) {
+        return Collator.getInstance(fallback.locales()
+                                            .get(0));
+    }
+
+    private static CollationKey collationKey(Dict dict, LocaleFallback fallback, Collator collator,
+            Cache<Dict, CollationKey> keys) {
+        CollationKey ret = keys.getIfPresent(dict);
+        if (ret == null) {
+            String str = dict.some(fallback)
+                             .str();
+            // collators are not guaranteed to be thread safe
+            synchronized (collator) {
+                ret = collator.getCollationKey(str);
+            }
+            keys.put(dict, ret);
+        }
+        return ret;
+    }
+
+    /**
+     * A dict with its collation key and original position, so that the sort
+     * is stable.
+     */
+    private static final class Keyed implements Comparable<Keyed> {
+
+        private final Dict dict;
+
+        private final int position;
+
+        private CollationKey key;
+
+        Keyed(Dict dict, int position) {
+            this.dict = dict;
+            this.position = position;
+        }
+
+        @Override
+        public int compareTo(Keyed other) {
+            int ret = key.compareTo(other.key);
+            return ret != 0 ? ret : (position < other.position ? -1 : (position == other.position ? 0 : 1));
+        }
+    }
+
+    /**
+     * Sorts the provided list of dicts by their string for the given fallback
+     * chain, collated by a collator for the first locale of the chain. Dicts
+     * with equal strings keep their relative order.
+     */
+    public static void sort(List<Dict> dicts, LocaleFallback fallback) {
+        sort(dicts, fallback, defaultCollator(fallback), null);
+    }
+
+    /**
+     * Sorts the provided list of dicts by their string for the given fallback
+     * chain, collated by the provided collator. All the collation keys are
+     * computed before sorting, in parallel if a pool is given and there are
+     * many dicts. Dicts with equal strings keep their relative order.
+     */
+    public static void sort(List<Dict> dicts, final LocaleFallback fallback, final Collator collator,
+            @Nullable ForkJoinPool pool) {
+        checkNotNull(dicts);
+        checkNotNull(fallback);
+        checkNotNull(collator);
+        final Keyed[] keyed = new Keyed[dicts.size()];
+        int i = 0;
+        for (Dict dict : dicts) {
+            keyed[i] = new Keyed(checkNotNull(dict), i);
+            i++;
+        }
+
+        int chunkCount = pool == null ? 1
+                : Math.max(1, Math.min(pool.getParallelism() * 4, keyed.length / MIN_CHUNK_SIZE));
+        if (chunkCount == 1) {
+            computeKeys(keyed, 0, keyed.length, fallback, (Collator) collator.clone());
+        } else {
+            final List<RecursiveAction> tasks = new ArrayList<RecursiveAction>(chunkCount);
+            for (int c = 0; c < chunkCount; c++) {
+                final int from = (int) ((long) keyed.length * c / chunkCount);
+                final int to = (int) ((long) keyed.length * (c + 1) / chunkCount);
+                tasks.add(new RecursiveAction() {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected void compute() {
+                        computeKeys(keyed, from, to, fallback, (Collator) collator.clone());
+                    }
+                });
+            }
+            pool.invoke(new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        }
+
+        Arrays.sort(keyed);
+        ListIterator<Dict> iter = dicts.listIterator();
+        for (Keyed k : keyed) {
+            iter.next();
+            iter.set(k.dict);
+        }
+    }
+
+    private static void computeKeys(Keyed[] keyed, int from, int to, LocaleFallback fallback, Collator collator) {
+        for (int i = from; i < to; i++) {
+            keyed[i].key = collator.getCollationKey(keyed[i].dict.some(fallback)
+                                                               .str());
+        }
+    }
+}
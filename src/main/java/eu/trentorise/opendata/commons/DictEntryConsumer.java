@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons;
+
+import java.util.Locale;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Receives the translations of a dict one by one, see
+ * {@link Dict#forEach(DictEntryConsumer)}.
+ *
+ * @author David Leoni
+ * @since 2.0
+ */
+@ParametersAreNonnullByDefault
+public interface DictEntryConsumer {
+
+    /**
+     * Called for each translation of a dict.
+     *
+     * @param locale
+     *            the locale of the translation
+     * @param index
+     *            the position of the translation among the ones in the same
+     *            locale
+     * @param string
+     *            the translation
+     */
+    void accept(Locale locale, int index, String string);
+}
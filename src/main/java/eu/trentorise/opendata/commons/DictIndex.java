@@ -0,0 +1,387 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Inverted index to quickly find which dicts of a large collection contain
+ * some text. Dicts are stored with caller-supplied int ids and searches have
+ * the same semantics of {@link Dict#contains(String)}.
+ *
+ * <p>
+ * Strings are lowercased according to their locale and split in trigrams,
+ * each trigram pointing to a sorted array of the ids of the dicts containing
+ * it. A search intersects the arrays of the trigrams of the searched text and
+ * then checks the few remaining candidates with the actual dicts. Texts
+ * shorter than three characters can't use the index and are checked against
+ * all dicts.
+ * </p>
+ *
+ * <p>
+ * Index is not thread safe, if it is modified while searched it must be
+ * externally synchronized.
+ * </p>
+ *
+ * @author David Leoni
+ * @since 2.0
+ */
+@ParametersAreNonnullByDefault
+@NotThreadSafe
+public final class DictIndex {
+
+    private static final int GRAM = 3;
+
+    private static final int[] NO_IDS = new int[0];
+
+    /**
+     * Bytes taken by a hash map entry, see {@link Footprints}
+     */
+    private static final int MAP_ENTRY_BYTES = 32;
+
+    private final Map<Long, Postings> postings = new HashMap<Long, Postings>();
+
+    private final Map<Integer, Dict> dicts = new HashMap<Integer, Dict>();
+
+    private DictIndex() {
+    }
+
+    /**
+     * Creates an empty index.
+     */
+    public static DictIndex of() {
+        return new DictIndex();
+    }
+
+    /**
+     * Sorted ids of the dicts containing a given trigram.
+     */
+    private static final class Postings {
+
+        private int[] ids = new int[2];
+
+        private int size = 0;
+
+        void add(int id) {
+            if (size > 0 && id <= ids[size - 1]) {
+                int pos = Arrays.binarySearch(ids, 0, size, id);
+                if (pos >= 0) {
+                    return;
+                }
+                insert(-pos - 1, id);
+            } else {
+                insert(size, id);
+            }
+        }
+
+        private void insert(int pos, int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+            }
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            ids[pos] = id;
+            size++;
+        }
+
+        void remove(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+                size--;
+            }
+        }
+    }
+
+    /**
+     * Stores a dict in the index under the provided id. If the id was already
+     * present, the old dict is replaced.
+     */
+    public void put(int id, Dict dict) {
+        checkNotNull(dict);
+        remove(id);
+        for (long trigram : trigrams(dict)) {
+            Postings p = postings.get(trigram);
+            if (p == null) {
+                p = new Postings();
+                postings.put(trigram, p);
+            }
+            p.add(id);
+        }
+        dicts.put(id, dict);
+    }
+
+    /**
+     * Removes the dict with provided id from the index.
+     *
+     * @return true if the id was in the index, false otherwise.
+     */
+    public boolean remove(int id) {
+        Dict dict = dicts.remove(id);
+        if (dict == null) {
+            return false;
+        }
+        for (long trigram : trigrams(dict)) {
+            Postings p = postings.get(trigram);
+            if (p != null) {
+                p.remove(id);
+                if (p.size == 0) {
+                    postings.remove(trigram);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of dicts in the index.
+     */
+    public int size() {
+        return dicts.size();
+    }
+
+    /**
+     * Returns the ids of the dicts containing the provided text, see
+     * {@link Dict#contains(String)}.
+     *
+     * @return the ids sorted in ascending order
+     */
+    public int[] search(String text) {
+        return search(text, (BitSet) null);
+    }
+
+    /**
+     * Returns the ids of the dicts having the provided text in any of the
+     * given locales, see {@link Dict#contains(String)}.
+     *
+     * @return the ids sorted in ascending order
+     */
+    public int[] search(String text, Iterable<Locale> locales) {
+        checkNotNull(locales);
+        BitSet localeIds = new BitSet();
+        for (Locale locale : locales) {
+            int localeId = LocaleRegistry.idIfPresent(locale);
+            if (localeId >= 0) {
+                localeIds.set(localeId);
+            }
+        }
+        if (localeIds.isEmpty()) {
+            return NO_IDS;
+        }
+        return search(text, localeIds);
+    }
+
+    private int[] search(String text, @Nullable BitSet localeIds) {
+        checkNotNull(text);
+        int[] candidates = candidates(text);
+        int[] ret = new int[candidates == null ? dicts.size() : candidates.length];
+        int n = 0;
+        if (candidates == null) {
+            for (Map.Entry<Integer, Dict> entry : dicts.entrySet()) {
+                if (entry.getValue()
+                         .contains(text, localeIds)) {
+                    ret[n++] = entry.getKey();
+                }
+            }
+            Arrays.sort(ret, 0, n);
+        } else {
+            for (int id : candidates) {
+                if (dicts.get(id)
+                         .contains(text, localeIds)) {
+                    ret[n++] = id;
+                }
+            }
+        }
+        return n == ret.length ? ret : Arrays.copyOf(ret, n);
+    }
+
+    /**
+     * Returns the sorted ids of dicts which may contain the text, or null if
+     * the text is too short to use the index.
+     */
+    @Nullable
+    private int[] candidates(String text) {
+        int[] ret = null;
+        for (String lowText : Dict.lowerCaseForms(text)) {
+            if (lowText.length() < GRAM) {
+                return null;
+            }
+            ret = ret == null ? intersect(lowText) : union(ret, intersect(lowText));
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the sorted ids of the dicts having all the trigrams of the
+     * provided lowercased text.
+     */
+    private int[] intersect(String lowText) {
+        long[] trigrams = trigrams(lowText);
+        Postings[] ps = new Postings[trigrams.length];
+        for (int i = 0; i < trigrams.length; i++) {
+            ps[i] = postings.get(trigrams[i]);
+            if (ps[i] == null) {
+                return NO_IDS;
+            }
+        }
+        // start from the shortest
+        int shortest = 0;
+        for (int i = 1; i < ps.length; i++) {
+            if (ps[i].size < ps[shortest].size) {
+                shortest = i;
+            }
+        }
+        int[] ret = Arrays.copyOf(ps[shortest].ids, ps[shortest].size);
+        int n = ret.length;
+        for (int i = 0; i < ps.length && n > 0; i++) {
+            if (i != shortest) {
+                n = retain(ret, n, ps[i]);
+            }
+        }
+        return n == ret.length ? ret : Arrays.copyOf(ret, n);
+    }
+
+    /**
+     * Keeps in the first n sorted ids only the ones also in the postings,
+     * moving them at the beginning of the array.
+     *
+     * @return the number of kept ids
+     */
+    private static int retain(int[] ids, int n, Postings p) {
+        int k = 0;
+        if (p.size > 16 * n) {
+            // few ids against a long list, better searching them
+            int from = 0;
+            for (int j = 0; j < n; j++) {
+                int pos = Arrays.binarySearch(p.ids, from, p.size, ids[j]);
+                if (pos >= 0) {
+                    ids[k++] = ids[j];
+                    from = pos + 1;
+                } else {
+                    from = -pos - 1;
+                }
+            }
+        } else {
+            int pi = 0;
+            for (int j = 0; j < n && pi < p.size; j++) {
+                while (pi < p.size && p.ids[pi] < ids[j]) {
+                    pi++;
+                }
+                if (pi < p.size && p.ids[pi] == ids[j]) {
+                    ids[k++] = ids[j];
+                }
+            }
+        }
+        return k;
+    }
+
+    private static int[] union(int[] ids1, int[] ids2) {
+        int[] ret = new int[ids1.length + ids2.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < ids1.length || j < ids2.length) {
+            if (j == ids2.length || (i < ids1.length && ids1[i] < ids2[j])) {
+                ret[n++] = ids1[i++];
+            } else if (i == ids1.length || ids2[j] < ids1[i]) {
+                ret[n++] = ids2[j++];
+            } else {
+                ret[n++] = ids1[i++];
+                j++;
+            }
+        }
+        return n == ret.length ? ret : Arrays.copyOf(ret, n);
+    }
+
+    /**
+     * Returns the distinct trigrams of the strings of a dict, lowercased
+     * according to their locale.
+     */
+    private static long[] trigrams(Dict dict) {
+        long[] ret = new long[16];
+        int n = 0;
+        for (int i = 0; i < dict.localeCount(); i++) {
+            Locale locale = LocaleRegistry.locale(dict.localeIdAt(i));
+            for (String s : dict.stringsAt(i)) {
+                String low = s.toLowerCase(locale);
+                for (int j = 0; j + GRAM <= low.length(); j++) {
+                    if (n == ret.length) {
+                        ret = Arrays.copyOf(ret, n * 2);
+                    }
+                    ret[n++] = trigram(low, j);
+                }
+            }
+        }
+        return distinct(ret, n);
+    }
+
+    /**
+     * Returns the distinct trigrams of an already lowercased string.
+     */
+    private static long[] trigrams(String low) {
+        long[] ret = new long[low.length() - GRAM + 1];
+        for (int j = 0; j < ret.length; j++) {
+            ret[j] = trigram(low, j);
+        }
+        return distinct(ret, ret.length);
+    }
+
+    private static long trigram(String s, int pos) {
+        return ((long) s.charAt(pos) << 32) | ((long) s.charAt(pos + 1) << 16) | s.charAt(pos + 2);
+    }
+
+    /**
+     * Sorts the first n values of the array and returns them without
+     * duplicates.
+     */
+    private static long[] distinct(long[] values, int n) {
+        Arrays.sort(values, 0, n);
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            if (k == 0 || values[i] != values[k - 1]) {
+                values[k++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, k);
+    }
+
+    /**
+     * Returns an estimate in bytes of the memory taken by the index, assuming
+     * a 64 bit JVM with compressed references. Dicts themselves are not
+     * counted, as they are supposedly held by the caller anyway.
+     */
+    public long memoryFootprint() {
+        long ret = 0;
+        long postingsBytes = Footprints.object(Footprints.REFERENCE_BYTES + 4);
+        long longBytes = Footprints.object(8);
+        for (Postings p : postings.values()) {
+            ret += MAP_ENTRY_BYTES + longBytes + postingsBytes + Footprints.intArray(p.ids.length);
+        }
+        long integerBytes = Footprints.object(4);
+        ret += dicts.size() * (MAP_ENTRY_BYTES + integerBytes);
+        // hash tables are at most 3/4 full
+        ret += Footprints.REFERENCE_BYTES * (postings.size() + dicts.size()) * 4L / 3;
+        return ret;
+    }
+}
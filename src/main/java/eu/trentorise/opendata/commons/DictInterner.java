@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Canonicalizes equal dicts to a single instance, so collections with many
+ * repeated dicts (i.e. default titles or category labels) keep only one copy
+ * of each. Since dicts cache their hash and compare by identity first,
+ * interned dicts are also cheap map keys.
+ *
+ * <pre>
+ * DictInterner interner = DictInterner.weak();
+ * Dict title = interner.intern(Dict.of(Locale.ITALIAN, "Dati"));
+ * </pre>
+ *
+ * Interners also count how many dicts they deduplicated, see
+ * {@link #hitRate()}.
+ *
+ * @author David Leoni
+ * @since 2.0
+ */
+@ParametersAreNonnullByDefault
+@ThreadSafe
+public final class DictInterner {
+
+    private final Interner<Dict> interner;
+
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private DictInterner(Interner<Dict> interner) {
+        this.interner = interner;
+    }
+
+    /**
+     * Returns an interner which holds canonical dicts only as long as they are
+     * referenced elsewhere.
+     */
+    public static DictInterner weak() {
+        return new DictInterner(Interners.<Dict> newWeakInterner());
+    }
+
+    /**
+     * Returns an interner which holds at most {@code maxSize} canonical dicts,
+     * evicting the least recently used ones. Evicted dicts stay valid, but
+     * equal dicts interned afterwards will get a new canonical instance.
+     */
+    public static DictInterner bounded(int maxSize) {
+        checkArgument(maxSize > 0, "Max size must be positive, found instead %s", maxSize);
+        final ConcurrentMap<Dict, Dict> map = CacheBuilder.newBuilder()
+                                                          .maximumSize(maxSize)
+                                                          .<Dict, Dict> build()
+                                                          .asMap();
+        return new DictInterner(new Interner<Dict>() {
+            @Override
+            public Dict intern(Dict dict) {
+                Dict ret = map.putIfAbsent(dict, dict);
+                return ret == null ? dict : ret;
+            }
+        });
+    }
+
+    /**
+     * Returns the canonical instance equal to the provided dict, which becomes
+     * itself canonical if no equal dict was interned before.
+     */
+    public Dict intern(Dict dict) {
+        checkNotNull(dict);
+        requestCount.incrementAndGet();
+        Dict ret = interner.intern(dict);
+        if (ret != dict) {
+            hitCount.incrementAndGet();
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the number of calls to {@link #intern(Dict)}
+     */
+    public long requestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Returns the number of calls to {@link #intern(Dict)} which returned a
+     * canonical dict other than the provided one, i.e. the number of
+     * duplicates which could be dropped.
+     */
+    public long hitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the ratio of interned dicts which were duplicates, or 0 if
+     * nothing was interned yet.
+     */
+    public double hitRate() {
+        long requests = requestCount.get();
+        return requests == 0 ? 0.0 : (double) hitCount.get() / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "DictInterner{requestCount=" + requestCount() + ", hitCount=" + hitCount() + "}";
+    }
+}
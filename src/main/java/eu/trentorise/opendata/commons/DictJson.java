@@ -0,0 +1,206 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import eu.trentorise.opendata.commons.exceptions.TodParseException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Locale;
+
+/**
+ * Streaming JSON conversion of {@link Dict} and {@link LocalizedString},
+ * without intermediate trees. Dicts are represented as objects with language
+ * tags as keys and arrays of strings as values, like
+ * {@code {"it": ["ciao"], "en": ["hello", "hi"]}}. Localized strings follow
+ * their bean properties, like {@code {"locale": "it", "string": "ciao"}}.
+ * {@link Locale#ROOT} is represented with the empty tag "". Locales which
+ * can't be written as a tag giving back an equal locale, like
+ * {@code new Locale("it_IT")}, are rejected.
+ *
+ * <p>
+ * To read many values from the same stream use {@link DictJsonReader}.
+ * </p>
+ *
+ * @author David Leoni
+ * @since 2.0
+ */
+public final class DictJson {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private DictJson() {
+    }
+
+    /**
+     * Writes the provided dict as JSON to {@code out}.
+     *
+     * @throws IllegalArgumentException
+     *             if a locale can't be written as a language tag, before
+     *             writing anything.
+     */
+    public static void write(Dict dict, Appendable out) throws IOException {
+        checkNotNull(dict);
+        checkNotNull(out);
+        String[] tags = new String[dict.localeCount()];
+        for (int i = 0; i < tags.length; i++) {
+            tags[i] = languageTag(LocaleRegistry.locale(dict.localeIdAt(i)));
+        }
+        out.append('{');
+        for (int i = 0; i < dict.localeCount(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            writeString(tags[i], out);
+            out.append(":[");
+            boolean first = true;
+            for (String s : dict.stringsAt(i)) {
+                if (first) {
+                    first = false;
+                } else {
+                    out.append(',');
+                }
+                writeString(s, out);
+            }
+            out.append(']');
+        }
+        out.append('}');
+    }
+
+    /**
+     * Writes the provided localized string as JSON to {@code out}.
+     *
+     * @throws IllegalArgumentException
+     *             if the locale can't be written as a language tag.
+     */
+    public static void write(LocalizedString localizedString, Appendable out) throws IOException {
+        checkNotNull(localizedString);
+        checkNotNull(out);
+        out.append("{\"locale\":");
+        writeString(languageTag(localizedString.loc()), out);
+        out.append(",\"string\":");
+        writeString(localizedString.str(), out);
+        out.append('}');
+    }
+
+    /**
+     * Returns the provided dict as a JSON string.
+     */
+    public static String toJson(Dict dict) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            write(dict, sb);
+        } catch (IOException ex) {
+            throw new IllegalStateException("StringBuilder shouldn't throw IOException!", ex);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the provided localized string as a JSON string.
+     */
+    public static String toJson(LocalizedString localizedString) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            write(localizedString, sb);
+        } catch (IOException ex) {
+            throw new IllegalStateException("StringBuilder shouldn't throw IOException!", ex);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reads a dict from the provided reader, which is consumed.
+     *
+     * @throws TodParseException
+     *             on malformed JSON.
+     */
+    public static Dict readDict(Reader reader) throws IOException {
+        return DictJsonReader.of(reader)
+                             .nextDict();
+    }
+
+    /**
+     * Reads a localized string from the provided reader, which is consumed.
+     *
+     * @throws TodParseException
+     *             on malformed JSON.
+     */
+    public static LocalizedString readLocalizedString(Reader reader) throws IOException {
+        return DictJsonReader.of(reader)
+                             .nextLocalizedString();
+    }
+
+    /**
+     * Returns the tag of the provided locale, "" for {@link Locale#ROOT}
+     *
+     * @throws IllegalArgumentException
+     *             if the tag doesn't give back an equal locale.
+     */
+    static String languageTag(Locale locale) {
+        if (Locale.ROOT.equals(locale)) {
+            return "";
+        }
+        String ret = locale.toLanguageTag();
+        checkArgument(Locale.forLanguageTag(ret)
+                            .equals(locale),
+                "Locale %s can't be represented as a language tag, found instead %s", locale, ret);
+        return ret;
+    }
+
+    /**
+     * Writes a JSON string, escaping only what needs to be escaped.
+     */
+    static void writeString(String s, Appendable out) throws IOException {
+        out.append('"');
+        int start = 0;
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x20 || c == '"' || c == '\\' || c == '\u2028' || c == '\u2029') {
+                out.append(s, start, i);
+                switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    out.append("\\u")
+                       .append(HEX[(c >> 12) & 0xF])
+                       .append(HEX[(c >> 8) & 0xF])
+                       .append(HEX[(c >> 4) & 0xF])
+                       .append(HEX[c & 0xF]);
+                }
+                start = i + 1;
+            }
+        }
+        out.append(s, start, n);
+        out.append('"');
+    }
+}
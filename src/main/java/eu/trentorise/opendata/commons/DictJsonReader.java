@@ -0,0 +1,406 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import eu.trentorise.opendata.commons.exceptions.TodParseException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Pulls {@link Dict} and {@link LocalizedString} values one at a time from a
+ * JSON stream in the format described in {@link DictJson}, building them
+ * directly from the tokens. The stream may hold a single value, a sequence of
+ * values separated by whitespace (i.e. one per line) or a top level array of
+ * values:
+ *
+ * <pre>
+ * DictJsonReader reader = DictJsonReader.of(new FileReader("catalog.json"));
+ * reader.beginArray();
+ * while (reader.hasNext()) {
+ *     Dict dict = reader.nextDict();
+ *     ...
+ * }
+ * reader.endArray();
+ * </pre>
+ *
+ * Malformed input raises a {@link TodParseException}.
+ *
+ * @author David Leoni
+ * @since 2.0
+ */
+@NotThreadSafe
+public final class DictJsonReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+
+    private final char[] buf = new char[BUFFER_SIZE];
+
+    private int pos = 0;
+
+    private int limit = 0;
+
+    /**
+     * Chars read before the current buffer, for error messages
+     */
+    private long offset = 0;
+
+    private boolean inArray = false;
+
+    private boolean expectComma = false;
+
+    private final StringBuilder sb = new StringBuilder();
+
+    /**
+     * Parsed language tags, so each tag is parsed only once
+     */
+    private final Map<String, Locale> locales = new HashMap<String, Locale>();
+
+    private DictJsonReader(Reader reader) {
+        this.reader = checkNotNull(reader);
+    }
+
+    /**
+     * Creates a json reader pulling chars from the provided reader. Reading is
+     * buffered, so the provided reader shouldn't be used by anybody else.
+     */
+    public static DictJsonReader of(Reader reader) {
+        return new DictJsonReader(reader);
+    }
+
+    /**
+     * Consumes the opening bracket of a top level array of values.
+     */
+    public void beginArray() throws IOException {
+        if (inArray) {
+            throw error("Nested arrays are not supported");
+        }
+        beforeValue();
+        expect('[');
+        inArray = true;
+        expectComma = false;
+    }
+
+    /**
+     * Consumes the closing bracket of a top level array of values.
+     */
+    public void endArray() throws IOException {
+        if (!inArray) {
+            throw error("No array was begun");
+        }
+        expect(']');
+        inArray = false;
+        expectComma = true;
+    }
+
+    /**
+     * Returns true if there is another value to read, either in the current
+     * array or, outside arrays, in the stream.
+     */
+    public boolean hasNext() throws IOException {
+        int c = peek();
+        if (inArray) {
+            if (c == ']') {
+                return false;
+            }
+            if (expectComma && c == ',') {
+                pos++;
+                expectComma = false;
+                c = peek();
+            }
+        }
+        return c != -1;
+    }
+
+    /**
+     * Reads a dict.
+     */
+    public Dict nextDict() throws IOException {
+        beforeValue();
+        expect('{');
+        Dict.Builder dictb = Dict.builder();
+        if (peek() == '}') {
+            pos++;
+        } else {
+            do {
+                Locale locale = readLocale();
+                expect(':');
+                if (peek() == '[') {
+                    pos++;
+                    if (peek() == ']') {
+                        pos++;
+                    } else {
+                        do {
+                            dictb.put(locale, readString());
+                        } while (commaOr(']'));
+                    }
+                } else {
+                    dictb.put(locale, readString());
+                }
+            } while (commaOr('}'));
+        }
+        expectComma = true;
+        return dictb.build();
+    }
+
+    /**
+     * Reads a localized string. Missing properties get their default values,
+     * unknown ones are skipped.
+     */
+    public LocalizedString nextLocalizedString() throws IOException {
+        beforeValue();
+        expect('{');
+        Locale locale = Locale.ROOT;
+        String string = "";
+        if (peek() == '}') {
+            pos++;
+        } else {
+            do {
+                String key = readString();
+                expect(':');
+                if ("locale".equals(key)) {
+                    locale = readLocale();
+                } else if ("string".equals(key)) {
+                    string = readString();
+                } else {
+                    skipValue();
+                }
+            } while (commaOr('}'));
+        }
+        expectComma = true;
+        return LocalizedString.of(locale, string);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void beforeValue() throws IOException {
+        if (inArray && expectComma) {
+            expect(',');
+        }
+        if (peek() == -1) {
+            throw error("Unexpected end of stream");
+        }
+    }
+
+    /**
+     * Consumes either a comma, returning true, or the provided closing char,
+     * returning false.
+     */
+    private boolean commaOr(char closing) throws IOException {
+        int c = peek();
+        if (c == ',') {
+            pos++;
+            return true;
+        }
+        if (c == closing) {
+            pos++;
+            return false;
+        }
+        throw error("Expected ',' or '" + closing + "'");
+    }
+
+    private Locale readLocale() throws IOException {
+        String tag = readString();
+        Locale ret = locales.get(tag);
+        if (ret == null) {
+            ret = LocaleRegistry.internIfRoom(TodUtils.languageTagToLocale(tag));
+            if (ret == null) {
+                throw error("Too many distinct locales, can't register locale " + tag);
+            }
+            if (locales.size() < LocaleRegistry.MAX_INPUT_SIZE) {
+                locales.put(tag, ret);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Skips whitespace and returns the next char without consuming it, or -1
+     * at the end of the stream.
+     */
+    private int peek() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) {
+                return -1;
+            }
+            char c = buf[pos];
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                pos++;
+            } else {
+                return c;
+            }
+        }
+    }
+
+    private boolean fill() throws IOException {
+        offset += limit;
+        pos = 0;
+        limit = 0;
+        int n = reader.read(buf, 0, buf.length);
+        if (n <= 0) {
+            return false;
+        }
+        limit = n;
+        return true;
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            throw error("Unexpected end of stream");
+        }
+        return buf[pos++];
+    }
+
+    private void expect(char expected) throws IOException {
+        int c = peek();
+        if (c != expected) {
+            throw error("Expected '" + expected + "'");
+        }
+        pos++;
+    }
+
+    private String readString() throws IOException {
+        expect('"');
+        // fast path: string without escapes entirely in the buffer
+        for (int i = pos; i < limit; i++) {
+            char c = buf[i];
+            if (c == '"') {
+                String ret = new String(buf, pos, i - pos);
+                pos = i + 1;
+                return ret;
+            }
+            if (c == '\\' || c < 0x20) {
+                break;
+            }
+        }
+        sb.setLength(0);
+        while (true) {
+            int start = pos;
+            while (pos < limit && buf[pos] != '"' && buf[pos] != '\\' && buf[pos] >= 0x20) {
+                pos++;
+            }
+            sb.append(buf, start, pos - start);
+            if (pos == limit) {
+                if (!fill()) {
+                    throw error("Unexpected end of stream");
+                }
+                continue;
+            }
+            char c = buf[pos++];
+            if (c == '"') {
+                return sb.toString();
+            } else if (c == '\\') {
+                sb.append(readEscape());
+            } else {
+                pos--;
+                throw error("Unescaped control char in string");
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+        int c = read();
+        switch (c) {
+        case '"':
+            return '"';
+        case '\\':
+            return '\\';
+        case '/':
+            return '/';
+        case 'b':
+            return '\b';
+        case 'f':
+            return '\f';
+        case 'n':
+            return '\n';
+        case 'r':
+            return '\r';
+        case 't':
+            return '\t';
+        case 'u':
+            int ret = 0;
+            for (int i = 0; i < 4; i++) {
+                int d = Character.digit(read(), 16);
+                if (d < 0) {
+                    throw error("Invalid unicode escape");
+                }
+                ret = (ret << 4) | d;
+            }
+            return (char) ret;
+        default:
+            throw error("Invalid escape");
+        }
+    }
+
+    /**
+     * Skips any json value
+     */
+    private void skipValue() throws IOException {
+        int c = peek();
+        if (c == '"') {
+            readString();
+        } else if (c == '{') {
+            pos++;
+            if (peek() == '}') {
+                pos++;
+                return;
+            }
+            do {
+                readString();
+                expect(':');
+                skipValue();
+            } while (commaOr('}'));
+        } else if (c == '[') {
+            pos++;
+            if (peek() == ']') {
+                pos++;
+                return;
+            }
+            do {
+                skipValue();
+            } while (commaOr(']'));
+        } else {
+            // number, true, false, null
+            int n = 0;
+            while (pos < limit || fill()) {
+                char ch = buf[pos];
+                if (ch == ',' || ch == '}' || ch == ']' || ch == ' ' || ch == '\n' || ch == '\r' || ch == '\t') {
+                    break;
+                }
+                pos++;
+                n++;
+            }
+            if (n == 0) {
+                throw error("Expected a value");
+            }
+        }
+    }
+
+    private TodParseException error(String msg) {
+        return new TodParseException(msg + " at char " + (offset + pos) + " of json stream");
+    }
+}
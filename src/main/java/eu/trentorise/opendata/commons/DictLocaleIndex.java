@@ -0,0 +1,249 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Locale;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Tells which dicts of a large collection are translated in which locales,
+ * to answer questions like "which datasets have an Italian and a German
+ * title but no English one" without looking at the dicts:
+ *
+ * <pre>
+ * BitSet ids = index.withAll(Locale.ITALIAN, Locale.GERMAN);
+ * ids.and(index.withNone(Locale.ENGLISH));
+ * </pre>
+ *
+ * <p>
+ * Dicts are stored with caller-supplied non negative int ids, and for each
+ * locale the index keeps a bitmap of the ids of the dicts having at least a
+ * non empty string in it. Bitmaps are compressed like roaring bitmaps, in
+ * chunks of 2^16 ids each stored as a sorted array, a plain bitmap or a list
+ * of runs, so their memory depends on how many ids they hold and how
+ * scattered they are, not on the highest id. Queries combine bitmaps a chunk
+ * at a time, so they take milliseconds on millions of ids. Their results are
+ * plain {@link BitSet}s though, as large as the highest id they hold: to
+ * keep them small, ids should be dense. Dicts can be put and removed at any
+ * time, dicts themselves are not kept.
+ * </p>
+ *
+ * <p>
+ * Index is not thread safe, if it is modified while queried it must be
+ * externally synchronized.
+ * </p>
+ *
+ * @author David Leoni
+ * @since 2.0
+ */
+@ParametersAreNonnullByDefault
+@NotThreadSafe
+public final class DictLocaleIndex {
+
+    /**
+     * Ids of all the dicts in the index
+     */
+    private final IdBitmap ids = new IdBitmap();
+
+    /**
+     * Ids of the dicts translated in each {@link LocaleRegistry} id, null if
+     * none is.
+     */
+    private IdBitmap[] idsByLocale = new IdBitmap[0];
+
+    private DictLocaleIndex() {
+    }
+
+    /**
+     * Creates an empty index.
+     */
+    public static DictLocaleIndex of() {
+        return new DictLocaleIndex();
+    }
+
+    /**
+     * Stores the locales of a dict in the index under the provided id. If the
+     * id was already present, the old locales are replaced.
+     */
+    public void put(int id, Dict dict) {
+        checkNotNull(dict);
+        remove(id);
+        ids.add(id);
+        for (int i = 0; i < dict.localeCount(); i++) {
+            if (hasText(dict, i)) {
+                int localeId = dict.localeIdAt(i);
+                if (localeId >= idsByLocale.length) {
+                    idsByLocale = Arrays.copyOf(idsByLocale, Math.max(localeId + 1, idsByLocale.length * 2));
+                }
+                if (idsByLocale[localeId] == null) {
+                    idsByLocale[localeId] = new IdBitmap();
+                }
+                idsByLocale[localeId].add(id);
+            }
+        }
+    }
+
+    private static boolean hasText(Dict dict, int i) {
+        for (String s : dict.stringsAt(i)) {
+            if (!s.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the dict with provided id from the index.
+     *
+     * @return true if the id was in the index, false otherwise.
+     */
+    public boolean remove(int id) {
+        checkArgument(id >= 0, "Id can't be negative, found instead %s", id);
+        if (!ids.remove(id)) {
+            return false;
+        }
+        for (IdBitmap bitmap : idsByLocale) {
+            if (bitmap != null) {
+                bitmap.remove(id);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of dicts in the index.
+     */
+    public int size() {
+        return ids.cardinality();
+    }
+
+    /**
+     * Returns a copy of the ids of all the dicts in the index.
+     */
+    public BitSet ids() {
+        return ids.toBitSet();
+    }
+
+    @Nullable
+    private IdBitmap bitmap(Locale locale) {
+        checkNotNull(locale);
+        int localeId = LocaleRegistry.idIfPresent(locale);
+        return localeId < 0 || localeId >= idsByLocale.length ? null : idsByLocale[localeId];
+    }
+
+    /**
+     * Returns the ids of the dicts translated in all of the provided locales,
+     * or all the ids if no locale is given.
+     */
+    public BitSet withAll(Locale... locales) {
+        IdBitmap ret = ids.copy();
+        for (Locale locale : locales) {
+            IdBitmap bitmap = bitmap(locale);
+            if (bitmap == null) {
+                return new BitSet();
+            }
+            ret.and(bitmap);
+        }
+        return ret.toBitSet();
+    }
+
+    /**
+     * Returns the ids of the dicts translated in at least one of the provided
+     * locales.
+     */
+    public BitSet withAny(Locale... locales) {
+        IdBitmap ret = new IdBitmap();
+        for (Locale locale : locales) {
+            IdBitmap bitmap = bitmap(locale);
+            if (bitmap != null) {
+                ret.or(bitmap);
+            }
+        }
+        return ret.toBitSet();
+    }
+
+    /**
+     * Returns the ids of the dicts translated in none of the provided locales.
+     */
+    public BitSet withNone(Locale... locales) {
+        IdBitmap ret = ids.copy();
+        for (Locale locale : locales) {
+            IdBitmap bitmap = bitmap(locale);
+            if (bitmap != null) {
+                ret.andNot(bitmap);
+            }
+        }
+        return ret.toBitSet();
+    }
+
+    /**
+     * Returns the number of dicts translated in the provided locale.
+     */
+    public int count(Locale locale) {
+        IdBitmap bitmap = bitmap(locale);
+        return bitmap == null ? 0 : bitmap.cardinality();
+    }
+
+    /**
+     * Returns the fraction of dicts translated in the provided locale, or 0 if
+     * the index is empty.
+     */
+    public double coverage(Locale locale) {
+        int size = size();
+        return size == 0 ? 0.0 : (double) count(locale) / size;
+    }
+
+    /**
+     * Returns the number of dicts translated in each locale, for the locales
+     * having at least one.
+     */
+    public ImmutableMap<Locale, Integer> counts() {
+        ImmutableMap.Builder<Locale, Integer> retb = ImmutableMap.builder();
+        for (int localeId = 0; localeId < idsByLocale.length; localeId++) {
+            IdBitmap bitmap = idsByLocale[localeId];
+            if (bitmap != null) {
+                int count = bitmap.cardinality();
+                if (count > 0) {
+                    retb.put(LocaleRegistry.locale(localeId), count);
+                }
+            }
+        }
+        return retb.build();
+    }
+
+    /**
+     * Returns an estimate in bytes of the memory taken by the index, assuming
+     * a 64 bit JVM with compressed references.
+     */
+    public long memoryFootprint() {
+        long ret = Footprints.object(2 * Footprints.REFERENCE_BYTES) + ids.memoryFootprint()
+                + Footprints.intArray(idsByLocale.length);
+        for (IdBitmap bitmap : idsByLocale) {
+            if (bitmap != null) {
+                ret += bitmap.memoryFootprint();
+            }
+        }
+        return ret;
+    }
+}
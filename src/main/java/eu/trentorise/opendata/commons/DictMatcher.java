@@ -0,0 +1,191 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import java.text.Normalizer;
+import java.util.Arrays;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Case and accent insensitive search of a text in dicts, so that i.e.
+ * searching "citta" finds "Città". The query is folded once when the matcher
+ * is compiled, while strings are folded char by char while scanning them with
+ * the Boyer-Moore-Horspool algorithm, so matching allocates nothing. Matchers
+ * are immutable and can be shared among threads.
+ *
+ * <pre>
+ * DictMatcher matcher = DictMatcher.of("citta");
+ * matcher.matches(Dict.of(Locale.ITALIAN, "Città di Trento")); // true
+ * </pre>
+ *
+ * <p>
+ * Folding lowercases chars and strips diacritics the same way for all
+ * locales, also mapping letters like 'ø', 'ł' or the Turkish dotless 'ı' to
+ * their plain latin counterpart. Chars are folded one by one, so strings are
+ * expected to be in composed form (NFC) and multi char foldings like 'ß' to
+ * "ss" are not supported.
+ * </p>
+ *
+ * @author David Leoni
+ * @since 2.0
+ */
+@ParametersAreNonnullByDefault
+@Immutable
+public final class DictMatcher {
+
+    /**
+     * Chars below this one are folded with {@link #FOLDED}
+     */
+    private static final int FOLDED_LIMIT = 0x2000;
+
+    private static final char[] FOLDED = new char[FOLDED_LIMIT];
+
+    private static final int SHIFT_MASK = 0xFF;
+
+    static {
+        for (int c = 0; c < FOLDED_LIMIT; c++) {
+            String decomposed = Normalizer.normalize(String.valueOf((char) c), Normalizer.Form.NFD);
+            FOLDED[c] = simpleFold(decomposed.charAt(0));
+        }
+        String[] extra = { "øo", "Øo", "đd", "Đd", "łl", "Łl", "ħh", "Ħh", "ıi" };
+        for (String pair : extra) {
+            FOLDED[pair.charAt(0)] = pair.charAt(1);
+        }
+    }
+
+    private final String query;
+
+    private final char[] pattern;
+
+    /**
+     * How much to shift the pattern for each folded char of the text aligned
+     * with its last char, indexed by the char lower bits. Chars sharing the
+     * lower bits get the smallest of their shifts.
+     */
+    private final int[] shifts;
+
+    private DictMatcher(String query, char[] pattern) {
+        this.query = query;
+        this.pattern = pattern;
+        this.shifts = new int[SHIFT_MASK + 1];
+        Arrays.fill(shifts, Math.max(1, pattern.length));
+        for (int k = 0; k < pattern.length - 1; k++) {
+            shifts[pattern[k] & SHIFT_MASK] = pattern.length - 1 - k;
+        }
+    }
+
+    /**
+     * Compiles a matcher for the provided query
+     */
+    public static DictMatcher of(String query) {
+        checkNotNull(query);
+        return new DictMatcher(query, fold(query).toCharArray());
+    }
+
+    /**
+     * Returns the provided text lowercased and without diacritics, folding it
+     * char by char like matched strings after composing it to NFC, so a query
+     * given with combining marks still matches its composed form.
+     */
+    static String fold(String text) {
+        String composed = Normalizer.normalize(text, Normalizer.Form.NFC);
+        char[] ret = new char[composed.length()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = fold(composed.charAt(i));
+        }
+        return new String(ret);
+    }
+
+    private static char simpleFold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * Returns the lowercase char without diacritics
+     */
+    static char fold(char c) {
+        return c < FOLDED_LIMIT ? FOLDED[c] : simpleFold(c);
+    }
+
+    /**
+     * Returns the query the matcher was compiled for
+     */
+    public String query() {
+        return query;
+    }
+
+    /**
+     * Returns the position in the provided text of the first match of the
+     * query, or -1 if there is none.
+     */
+    public int indexIn(CharSequence text) {
+        char[] p = pattern;
+        int m = p.length;
+        int last = m - 1;
+        int end = text.length() - m;
+        int i = 0;
+        if (m == 0) {
+            return 0;
+        }
+        while (i <= end) {
+            char c = fold(text.charAt(i + last));
+            if (c == p[last]) {
+                int j = last - 1;
+                while (j >= 0 && fold(text.charAt(i + j)) == p[j]) {
+                    j--;
+                }
+                if (j < 0) {
+                    return i;
+                }
+            }
+            i += shifts[c & SHIFT_MASK];
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true if the query is found in the provided text
+     */
+    public boolean matches(CharSequence text) {
+        return indexIn(text) >= 0;
+    }
+
+    /**
+     * Returns true if the query is found in any of the translations of the
+     * provided dict.
+     */
+    public boolean matches(Dict dict) {
+        checkNotNull(dict);
+        for (int i = 0; i < dict.localeCount(); i++) {
+            ImmutableList<String> strings = dict.stringsAt(i);
+            for (int j = 0; j < strings.size(); j++) {
+                if (indexIn(strings.get(j)) >= 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "DictMatcher{query=" + query + "}";
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Merges many dicts into one, see {@link Dict#ofDicts(Iterable)}.
+ *
+ * <p>
+ * Input is split in contiguous chunks and merged in two passes. The first
+ * pass counts the strings of each locale in each chunk, so every locale of
+ * the result gets an array of the exact size and every chunk knows where its
+ * strings go in it. The second pass copies the strings there. Both passes run
+ * on the chunks in parallel if a pool is given, and since chunks write to
+ * disjoint positions the result is the same of a sequential merge. Locales
+ * found in a single input dict keep sharing its list.
+ * </p>
+ *
+ * @author David Leoni
+ * @since 2.0
+ */
+@ParametersAreNonnullByDefault
+final class DictMerge {
+
+    /**
+     * Minimum number of dicts worth a parallel task
+     */
+    static final int MIN_CHUNK_SIZE = 1024;
+
+    private DictMerge() {
+    }
+
+    /**
+     * Strings counts of a contiguous range of the input
+     */
+    private static final class Chunk {
+
+        private final List<Dict> dicts;
+
+        private final int from;
+
+        private final int to;
+
+        /**
+         * Slot of each {@link LocaleRegistry} id, -1 if not in the chunk
+         */
+        private final int[] slotById;
+
+        private int[] localeIds = new int[4];
+
+        private int[] counts = new int[4];
+
+        /**
+         * Number of dicts having each locale
+         */
+        private int[] contributors = new int[4];
+
+        /**
+         * Strings of the first dict having each locale
+         */
+        private List<ImmutableList<String>> firstStrings = new ArrayList<ImmutableList<String>>(4);
+
+        private int localeCount = 0;
+
+        /**
+         * Slot in the merged dict of each slot of the chunk
+         */
+        private int[] mergedSlots;
+
+        /**
+         * Position in the merged arrays of the next string of each slot
+         */
+        private int[] cursors;
+
+        Chunk(List<Dict> dicts, int from, int to, int registrySize) {
+            this.dicts = dicts;
+            this.from = from;
+            this.to = to;
+            this.slotById = new int[registrySize];
+            Arrays.fill(slotById, -1);
+        }
+
+        void count() {
+            for (int j = from; j < to; j++) {
+                Dict dict = checkNotNull(dicts.get(j));
+                for (int i = 0; i < dict.localeCount(); i++) {
+                    int localeId = dict.localeIdAt(i);
+                    int slot = slotById[localeId];
+                    if (slot < 0) {
+                        slot = addSlot(localeId, dict.stringsAt(i));
+                    }
+                    counts[slot] += dict.stringsAt(i)
+                                        .size();
+                    contributors[slot]++;
+                }
+            }
+        }
+
+        private int addSlot(int localeId, ImmutableList<String> strings) {
+            if (localeCount == localeIds.length) {
+                localeIds = Arrays.copyOf(localeIds, localeCount * 2);
+                counts = Arrays.copyOf(counts, localeCount * 2);
+                contributors = Arrays.copyOf(contributors, localeCount * 2);
+            }
+            localeIds[localeCount] = localeId;
+            firstStrings.add(strings);
+            slotById[localeId] = localeCount;
+            return localeCount++;
+        }
+
+        /**
+         * Copies the strings of the chunk in the merged arrays, skipping
+         * locales whose list is shared.
+         */
+        void copy(String[][] merged) {
+            for (int j = from; j < to; j++) {
+                Dict dict = dicts.get(j);
+                for (int i = 0; i < dict.localeCount(); i++) {
+                    int slot = slotById[dict.localeIdAt(i)];
+                    String[] target = merged[mergedSlots[slot]];
+                    if (target != null) {
+                        ImmutableList<String> strings = dict.stringsAt(i);
+                        int pos = cursors[slot];
+                        for (int k = 0; k < strings.size(); k++) {
+                            target[pos++] = strings.get(k);
+                        }
+                        cursors[slot] = pos;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges the provided dicts, in parallel if a pool is given and there are
+     * enough dicts.
+     */
+    static Dict merge(Iterable<Dict> dicts, @Nullable ForkJoinPool pool) {
+        checkNotNull(dicts);
+        final List<Dict> list = dicts instanceof List && dicts instanceof RandomAccess ? (List<Dict>) dicts
+                : Lists.newArrayList(dicts);
+        int n = list.size();
+        if (n == 0) {
+            return Dict.of();
+        }
+        if (n == 1) {
+            return checkNotNull(list.get(0));
+        }
+
+        int chunkCount = pool == null ? 1
+                : Math.max(1, Math.min(pool.getParallelism() * 4, n / MIN_CHUNK_SIZE));
+        int registrySize = LocaleRegistry.size();
+        final Chunk[] chunks = new Chunk[chunkCount];
+        for (int c = 0; c < chunkCount; c++) {
+            chunks[c] = new Chunk(list, (int) ((long) n * c / chunkCount), (int) ((long) n * (c + 1) / chunkCount),
+                    registrySize);
+        }
+
+        run(pool, chunks, null);
+
+        // locales in order of first appearance, with exact sizes
+        int[] slotById = new int[registrySize];
+        Arrays.fill(slotById, -1);
+        int[] localeIds = new int[4];
+        int[] totals = new int[4];
+        int[] contributors = new int[4];
+        List<ImmutableList<String>> firstStrings = new ArrayList<ImmutableList<String>>();
+        int localeCount = 0;
+        for (Chunk chunk : chunks) {
+            chunk.mergedSlots = new int[chunk.localeCount];
+            chunk.cursors = new int[chunk.localeCount];
+            for (int s = 0; s < chunk.localeCount; s++) {
+                int localeId = chunk.localeIds[s];
+                int m = slotById[localeId];
+                if (m < 0) {
+                    if (localeCount == localeIds.length) {
+                        localeIds = Arrays.copyOf(localeIds, localeCount * 2);
+                        totals = Arrays.copyOf(totals, localeCount * 2);
+                        contributors = Arrays.copyOf(contributors, localeCount * 2);
+                    }
+                    m = localeCount++;
+                    slotById[localeId] = m;
+                    localeIds[m] = localeId;
+                    firstStrings.add(chunk.firstStrings.get(s));
+                }
+                chunk.mergedSlots[s] = m;
+                chunk.cursors[s] = totals[m];
+                totals[m] += chunk.counts[s];
+                contributors[m] += chunk.contributors[s];
+            }
+        }
+
+        final String[][] merged = new String[localeCount][];
+        for (int m = 0; m < localeCount; m++) {
+            if (contributors[m] > 1) {
+                merged[m] = new String[totals[m]];
+            }
+        }
+
+        run(pool, chunks, merged);
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        ImmutableList<String>[] strings = new ImmutableList[localeCount];
+        for (int m = 0; m < localeCount; m++) {
+            strings[m] = merged[m] == null ? firstStrings.get(m) : ImmutableList.copyOf(merged[m]);
+        }
+        return Dict.ofArrays(Arrays.copyOf(localeIds, localeCount), strings);
+    }
+
+    /**
+     * Runs on all the chunks the counting pass if {@code merged} is null,
+     * otherwise the copying pass.
+     */
+    private static void run(@Nullable ForkJoinPool pool, final Chunk[] chunks, @Nullable final String[][] merged) {
+        if (pool == null || chunks.length == 1) {
+            for (Chunk chunk : chunks) {
+                if (merged == null) {
+                    chunk.count();
+                } else {
+                    chunk.copy(merged);
+                }
+            }
+            return;
+        }
+        pool.invoke(new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                List<RecursiveAction> tasks = new ArrayList<RecursiveAction>(chunks.length);
+                for (final Chunk chunk : chunks) {
+                    tasks.add(new RecursiveAction() {
+                        private static final long serialVersionUID = 1L;
+
+                        @Override
+                        protected void compute() {
+                            if (merged == null) {
+                                chunk.count();
+                            } else {
+                                chunk.copy(merged);
+                            }
+                        }
+                    });
+                }
+                invokeAll(tasks);
+            }
+        });
+    }
+}
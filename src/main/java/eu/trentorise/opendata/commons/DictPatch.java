@@ -0,0 +1,254 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * The changes needed to turn a dict into another one, as computed by
+ * {@link Dict#diff(Dict)} and applied by {@link Dict#apply(DictPatch)}.
+ * Unchanged locales are not in the patch, each changed locale has a single
+ * {@link Edit} replacing a range of its strings.
+ *
+ * <p>
+ * Patches are serialized in the compact form described in {@link Ser}.
+ * </p>
+ *
+ * @author David Leoni
+ * @since 2.0
+ */
+@ParametersAreNonnullByDefault
+@Immutable
+public final class DictPatch implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final DictPatch INSTANCE = new DictPatch(ImmutableList.<Edit> of());
+
+    private final ImmutableList<Edit> edits;
+
+    /**
+     * Replacement of a range of strings of a locale: starting from
+     * {@link #position()}, the {@link #removed()} strings are replaced by the
+     * {@link #added()} ones.
+     */
+    @Immutable
+    public static final class Edit {
+
+        private final Locale locale;
+
+        private final int position;
+
+        private final ImmutableList<String> removed;
+
+        private final ImmutableList<String> added;
+
+        private Edit(Locale locale, int position, ImmutableList<String> removed, ImmutableList<String> added) {
+            this.locale = locale;
+            this.position = position;
+            this.removed = removed;
+            this.added = added;
+        }
+
+        /**
+         * Creates an edit replacing, starting from {@code position}, the
+         * {@code removed} strings of {@code locale} with the {@code added}
+         * ones. The locale is not registered in {@link LocaleRegistry}, but if
+         * it already is its canonical instance is kept.
+         */
+        public static Edit of(Locale locale, int position, Iterable<String> removed, Iterable<String> added) {
+            checkArgument(position >= 0, "Position can't be negative, found instead %s", position);
+            checkNotNull(locale);
+            int id = LocaleRegistry.idIfPresent(locale);
+            Edit ret = new Edit(id < 0 ? locale : LocaleRegistry.locale(id), position, ImmutableList.copyOf(removed),
+                    ImmutableList.copyOf(added));
+            checkArgument(!ret.removed.isEmpty() || !ret.added.isEmpty(), "Edit changes nothing!");
+            return ret;
+        }
+
+        /**
+         * Returns the locale of the changed strings
+         */
+        public Locale locale() {
+            return locale;
+        }
+
+        /**
+         * Returns the position of the first changed string
+         */
+        public int position() {
+            return position;
+        }
+
+        /**
+         * Returns the strings which are replaced, in order
+         */
+        public ImmutableList<String> removed() {
+            return removed;
+        }
+
+        /**
+         * Returns the replacing strings, in order
+         */
+        public ImmutableList<String> added() {
+            return added;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 7;
+            hash = 53 * hash + locale.hashCode();
+            hash = 53 * hash + position;
+            hash = 53 * hash + removed.hashCode();
+            hash = 53 * hash + added.hashCode();
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == null) {
+                return false;
+            }
+            if (getClass() != obj.getClass()) {
+                return false;
+            }
+            final Edit other = (Edit) obj;
+            return this.position == other.position && this.locale.equals(other.locale)
+                    && this.removed.equals(other.removed) && this.added.equals(other.added);
+        }
+
+        @Override
+        public String toString() {
+            return "Edit{locale=" + locale + ", position=" + position + ", removed=" + removed + ", added=" + added
+                    + "}";
+        }
+    }
+
+    private DictPatch(ImmutableList<Edit> edits) {
+        this.edits = edits;
+    }
+
+    /**
+     * Returns the empty patch
+     */
+    public static DictPatch of() {
+        return INSTANCE;
+    }
+
+    /**
+     * Creates a patch out of edits of distinct locales.
+     *
+     * @throws IllegalArgumentException
+     *             if two edits have the same locale.
+     */
+    public static DictPatch of(Iterable<Edit> edits) {
+        ImmutableList<Edit> list = ImmutableList.copyOf(edits);
+        if (list.isEmpty()) {
+            return INSTANCE;
+        }
+        Set<Locale> locales = new HashSet<Locale>();
+        for (Edit edit : list) {
+            checkArgument(locales.add(edit.locale()), "Found more than one edit for locale %s", edit.locale());
+        }
+        return new DictPatch(list);
+    }
+
+    /**
+     * Returns the edits of the patch, at most one per locale
+     */
+    public ImmutableList<Edit> edits() {
+        return edits;
+    }
+
+    /**
+     * Returns true if the patch changes nothing
+     */
+    public boolean isEmpty() {
+        return edits.isEmpty();
+    }
+
+    /**
+     * Computes the edit turning {@code from} strings into {@code to} ones by
+     * replacing what lies between their common prefix and common suffix, or
+     * returns null if they are equal.
+     */
+    @Nullable
+    static Edit edit(Locale locale, ImmutableList<String> from, ImmutableList<String> to) {
+        checkNotNull(locale);
+        if (from == to) {
+            return null;
+        }
+        int prefix = 0;
+        int max = Math.min(from.size(), to.size());
+        while (prefix < max && from.get(prefix)
+                                   .equals(to.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix && from.get(from.size() - 1 - suffix)
+                                            .equals(to.get(to.size() - 1 - suffix))) {
+            suffix++;
+        }
+        if (prefix + suffix == from.size() && from.size() == to.size()) {
+            return null;
+        }
+        // copies, as sublists would keep the whole lists alive
+        return new Edit(locale, prefix, ImmutableList.copyOf(from.subList(prefix, from.size() - suffix)),
+                ImmutableList.copyOf(to.subList(prefix, to.size() - suffix)));
+    }
+
+    private Object writeReplace() {
+        return new Ser(Ser.DICT_PATCH, this);
+    }
+
+    private void readObject(ObjectInputStream stream) throws InvalidObjectException {
+        throw new InvalidObjectException("Proxy required");
+    }
+
+    @Override
+    public int hashCode() {
+        return edits.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final DictPatch other = (DictPatch) obj;
+        return this.edits.equals(other.edits);
+    }
+
+    @Override
+    public String toString() {
+        return "DictPatch{" + edits + "}";
+    }
+}
@@ -0,0 +1,539 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Index to autocomplete the strings of a large collection of dicts, stored
+ * with caller-supplied int ids. Given a prefix, it returns the ids of the
+ * dicts having a string starting with it, heaviest first. Strings and
+ * prefixes are compared case and accent insensitively like in
+ * {@link DictMatcher}.
+ *
+ * <pre>
+ * DictPrefixIndex index = DictPrefixIndex.builder()
+ *                                        .put(1, Dict.of(Locale.ITALIAN, "Città di Trento"), 10)
+ *                                        .build();
+ * index.complete("citta", LocaleFallback.of(Locale.ITALIAN), 5); // [1]
+ * </pre>
+ *
+ * <p>
+ * The folded strings, truncated to {@link #MAX_KEY_LENGTH} chars, are sorted
+ * by locale and then alphabetically in a single char array, so the strings of
+ * a locale starting with a prefix are a contiguous range found by binary
+ * search. The heaviest entries of a range are extracted with a tree keeping
+ * the heaviest entry of each subrange, so getting the top k results of a
+ * locale takes {@code O(k log n)} steps regardless of how many strings match.
+ * Entries found this way which turn out not to be results are skipped at the
+ * cost of {@code O(log n)} steps each: with a {@link LocaleFallback}, the ones
+ * whose dict prefers another locale, and with prefixes longer than
+ * {@link #MAX_KEY_LENGTH}, the ones whose actual strings don't start with the
+ * prefix.
+ * </p>
+ *
+ * @author David Leoni
+ * @since 2.0
+ */
+@ParametersAreNonnullByDefault
+@Immutable
+public final class DictPrefixIndex {
+
+    /**
+     * Maximum number of folded chars kept in the index for each string.
+     * Strings equal up to this length are completed in the order they were
+     * put.
+     */
+    public static final int MAX_KEY_LENGTH = 32;
+
+    private static final int[] NO_IDS = new int[0];
+
+    private final int[] ids;
+
+    private final Dict[] dicts;
+
+    private final int[] weights;
+
+    /**
+     * Folded keys of all entries, one after the other
+     */
+    private final char[] keys;
+
+    /**
+     * Start of the key of each entry in {@link #keys}, plus the end of the
+     * last one
+     */
+    private final int[] keyOffsets;
+
+    /**
+     * Dict of each entry, as position in {@link #dicts}
+     */
+    private final int[] entrySlots;
+
+    /**
+     * Entries of {@link LocaleRegistry} id l are in the range
+     * {@code [localeStarts[l], localeStarts[l + 1])}
+     */
+    private final int[] localeStarts;
+
+    /**
+     * Heaviest entry of each subrange, as a segment tree of entries count
+     * leaves
+     */
+    private final int[] tree;
+
+    private DictPrefixIndex(int[] ids, Dict[] dicts, int[] weights, char[] keys, int[] keyOffsets,
+            int[] entrySlots, int[] localeStarts) {
+        this.ids = ids;
+        this.dicts = dicts;
+        this.weights = weights;
+        this.keys = keys;
+        this.keyOffsets = keyOffsets;
+        this.entrySlots = entrySlots;
+        this.localeStarts = localeStarts;
+
+        int n = entrySlots.length;
+        this.tree = new int[2 * n];
+        for (int e = 0; e < n; e++) {
+            tree[n + e] = e;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            tree[i] = heavier(tree[2 * i], tree[2 * i + 1]);
+        }
+    }
+
+    /**
+     * Collects the dicts to index.
+     */
+    @NotThreadSafe
+    public static final class Builder {
+
+        private final Map<Integer, Integer> slotsById = new HashMap<Integer, Integer>();
+
+        private final List<Dict> dicts = new ArrayList<Dict>();
+
+        private final List<Integer> weights = new ArrayList<Integer>();
+
+        private Builder() {
+        }
+
+        /**
+         * Stores a dict under the provided id with zero weight. If the id was
+         * already present, the old dict is replaced.
+         */
+        public Builder put(int id, Dict dict) {
+            return put(id, dict, 0);
+        }
+
+        /**
+         * Stores a dict under the provided id. Heavier dicts are returned first
+         * when completing, dicts with the same weight in alphabetical order.
+         * If the id was already present, the old dict is replaced.
+         */
+        public Builder put(int id, Dict dict, int weight) {
+            checkNotNull(dict);
+            Integer slot = slotsById.get(id);
+            if (slot == null) {
+                slotsById.put(id, dicts.size());
+                dicts.add(dict);
+                weights.add(weight);
+            } else {
+                dicts.set(slot, dict);
+                weights.set(slot, weight);
+            }
+            return this;
+        }
+
+        /**
+         * Builds the index of the dicts put so far
+         */
+        public DictPrefixIndex build() {
+            int slotCount = dicts.size();
+            int[] ids = new int[slotCount];
+            for (Map.Entry<Integer, Integer> entry : slotsById.entrySet()) {
+                ids[entry.getValue()] = entry.getKey();
+            }
+            int[] ws = new int[slotCount];
+            for (int s = 0; s < slotCount; s++) {
+                ws[s] = weights.get(s);
+            }
+
+            List<Entry> entries = new ArrayList<Entry>();
+            int maxLocaleId = -1;
+            for (int s = 0; s < slotCount; s++) {
+                Dict dict = dicts.get(s);
+                for (int i = 0; i < dict.localeCount(); i++) {
+                    int localeId = dict.localeIdAt(i);
+                    Set<String> seen = new HashSet<String>();
+                    for (String str : dict.stringsAt(i)) {
+                        if (!str.isEmpty()) {
+                            String key = key(DictMatcher.fold(str));
+                            if (seen.add(key)) {
+                                entries.add(new Entry(localeId, key, s));
+                                maxLocaleId = Math.max(maxLocaleId, localeId);
+                            }
+                        }
+                    }
+                }
+            }
+            Entry[] sorted = entries.toArray(new Entry[entries.size()]);
+            Arrays.sort(sorted);
+
+            int n = sorted.length;
+            int[] keyOffsets = new int[n + 1];
+            int[] entrySlots = new int[n];
+            int[] localeStarts = new int[maxLocaleId + 2];
+            int length = 0;
+            for (int e = 0; e < n; e++) {
+                length += sorted[e].key.length();
+            }
+            char[] keys = new char[length];
+            int pos = 0;
+            int localeId = 0;
+            for (int e = 0; e < n; e++) {
+                Entry entry = sorted[e];
+                while (localeId < entry.localeId) {
+                    localeStarts[++localeId] = e;
+                }
+                keyOffsets[e] = pos;
+                entry.key.getChars(0, entry.key.length(), keys, pos);
+                pos += entry.key.length();
+                entrySlots[e] = entry.slot;
+            }
+            keyOffsets[n] = pos;
+            while (localeId < maxLocaleId + 1) {
+                localeStarts[++localeId] = n;
+            }
+            return new DictPrefixIndex(ids, dicts.toArray(new Dict[slotCount]), ws, keys, keyOffsets, entrySlots,
+                    localeStarts);
+        }
+    }
+
+    /**
+     * A string of a dict, only used while building
+     */
+    private static final class Entry implements Comparable<Entry> {
+
+        private final int localeId;
+
+        private final String key;
+
+        private final int slot;
+
+        Entry(int localeId, String key, int slot) {
+            this.localeId = localeId;
+            this.key = key;
+            this.slot = slot;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            if (localeId != other.localeId) {
+                return localeId < other.localeId ? -1 : 1;
+            }
+            int ret = key.compareTo(other.key);
+            if (ret != 0) {
+                return ret;
+            }
+            return slot < other.slot ? -1 : (slot == other.slot ? 0 : 1);
+        }
+    }
+
+    /**
+     * Returns a builder for a new index
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private static String key(String folded) {
+        return folded.length() > MAX_KEY_LENGTH ? folded.substring(0, MAX_KEY_LENGTH) : folded;
+    }
+
+    /**
+     * Returns the number of indexed dicts
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Returns the ids of at most {@code k} dicts having a string in the given
+     * locale starting with the provided prefix, heaviest first.
+     */
+    public int[] complete(String prefix, Locale locale, int k) {
+        checkNotNull(locale);
+        int localeId = LocaleRegistry.idIfPresent(locale);
+        if (localeId < 0) {
+            checkNotNull(prefix);
+            checkArgument(k >= 0, "k can't be negative, found instead %s", k);
+            return NO_IDS;
+        }
+        return complete(prefix, new int[] { localeId }, new int[] { 0 }, null, k);
+    }
+
+    /**
+     * Returns the ids of at most {@code k} dicts whose strings chosen by
+     * {@link Dict#some(LocaleFallback) some(fallback)} include one starting
+     * with the provided prefix, heaviest first. So, like {@code some}, when
+     * a dict has no non empty string in the chain its English strings are
+     * used, and failing that the ones of its first locale having a non empty
+     * string. Dicts with the same weight come in the order of the locale of
+     * the matching string in the chain, followed by English and then by the
+     * other locales, and then alphabetically.
+     */
+    public int[] complete(String prefix, LocaleFallback fallback, int k) {
+        checkNotNull(fallback);
+        int locales = localeStarts.length - 1;
+        int[] localeIds = new int[fallback.size() + Math.max(locales, 0)];
+        int[] positions = new int[localeIds.length];
+        boolean[] added = new boolean[Math.max(locales, 0)];
+        int n = 0;
+        for (int c = 0; c < fallback.size(); c++) {
+            int localeId = fallback.localeIdAt(c);
+            localeIds[n] = localeId;
+            positions[n++] = c;
+            if (localeId < locales) {
+                added[localeId] = true;
+            }
+        }
+        if (LocaleRegistry.ENGLISH_ID < locales && !added[LocaleRegistry.ENGLISH_ID]) {
+            added[LocaleRegistry.ENGLISH_ID] = true;
+            localeIds[n] = LocaleRegistry.ENGLISH_ID;
+            positions[n++] = fallback.size();
+        }
+        for (int l = 0; l < locales; l++) {
+            if (!added[l] && localeStarts[l] < localeStarts[l + 1]) {
+                localeIds[n] = l;
+                positions[n++] = fallback.size() + 1;
+            }
+        }
+        return complete(prefix, Arrays.copyOf(localeIds, n), Arrays.copyOf(positions, n), fallback, k);
+    }
+
+    /**
+     * Entries of a locale in a range, of which {@link #top} is the heaviest
+     */
+    private static final class Range implements Comparable<Range> {
+
+        private final int from;
+
+        private final int to;
+
+        private final int top;
+
+        private final int topWeight;
+
+        private final int chainPosition;
+
+        private final int localeId;
+
+        Range(int from, int to, int top, int topWeight, int chainPosition, int localeId) {
+            this.from = from;
+            this.to = to;
+            this.top = top;
+            this.topWeight = topWeight;
+            this.chainPosition = chainPosition;
+            this.localeId = localeId;
+        }
+
+        @Override
+        public int compareTo(Range other) {
+            if (topWeight != other.topWeight) {
+                return topWeight > other.topWeight ? -1 : 1;
+            }
+            if (chainPosition != other.chainPosition) {
+                return chainPosition < other.chainPosition ? -1 : 1;
+            }
+            return top < other.top ? -1 : (top == other.top ? 0 : 1);
+        }
+    }
+
+    /**
+     * Completes the prefix in the given locales, {@code positions} telling the
+     * order of each one in the chain.
+     */
+    private int[] complete(String prefix, int[] localeIds, int[] positions, @Nullable LocaleFallback fallback,
+            int k) {
+        checkNotNull(prefix);
+        checkArgument(k >= 0, "k can't be negative, found instead %s", k);
+        if (k == 0) {
+            return NO_IDS;
+        }
+        String folded = DictMatcher.fold(prefix);
+        String key = key(folded);
+
+        PriorityQueue<Range> queue = new PriorityQueue<Range>();
+        for (int c = 0; c < localeIds.length; c++) {
+            int localeId = localeIds[c];
+            if (localeId + 1 < localeStarts.length) {
+                int from = bound(key, localeStarts[localeId], localeStarts[localeId + 1], false);
+                int to = bound(key, from, localeStarts[localeId + 1], true);
+                offer(queue, from, to, positions[c], localeId);
+            }
+        }
+
+        int[] ret = new int[k];
+        int n = 0;
+        Set<Integer> found = new HashSet<Integer>();
+        // a dict may show up in many ranges, so its chosen locale is kept
+        Map<Integer, Integer> chosenLocaleIds = new HashMap<Integer, Integer>();
+        while (n < k && !queue.isEmpty()) {
+            Range range = queue.poll();
+            int slot = entrySlots[range.top];
+            if (!found.contains(slot)
+                    && (fallback == null || chosenLocaleId(slot, fallback, chosenLocaleIds) == range.localeId)
+                    && (folded.length() <= MAX_KEY_LENGTH || startsWith(dicts[slot], range.localeId, folded))) {
+                found.add(slot);
+                ret[n++] = ids[slot];
+            }
+            offer(queue, range.from, range.top, range.chainPosition, range.localeId);
+            offer(queue, range.top + 1, range.to, range.chainPosition, range.localeId);
+        }
+        return n == ret.length ? ret : Arrays.copyOf(ret, n);
+    }
+
+    private void offer(PriorityQueue<Range> queue, int from, int to, int chainPosition, int localeId) {
+        if (from < to) {
+            int top = heaviest(from, to);
+            queue.add(new Range(from, to, top, weights[entrySlots[top]], chainPosition, localeId));
+        }
+    }
+
+    /**
+     * Returns the first entry in {@code [from, to)} whose key starts with the
+     * provided one or comes after it, or if {@code after} is true the first
+     * one which comes after the keys starting with it.
+     */
+    private int bound(String key, int from, int to, boolean after) {
+        int lo = from;
+        int hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = comparePrefix(mid, key);
+            if (cmp < 0 || (after && cmp == 0)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Compares the key of an entry truncated to the length of the provided
+     * one with it.
+     */
+    private int comparePrefix(int entry, String key) {
+        int start = keyOffsets[entry];
+        int length = keyOffsets[entry + 1] - start;
+        int max = Math.min(length, key.length());
+        for (int i = 0; i < max; i++) {
+            char c1 = keys[start + i];
+            char c2 = key.charAt(i);
+            if (c1 != c2) {
+                return c1 < c2 ? -1 : 1;
+            }
+        }
+        return length < key.length() ? -1 : 0;
+    }
+
+    private int heavier(int entry1, int entry2) {
+        if (entry1 < 0) {
+            return entry2;
+        }
+        if (entry2 < 0) {
+            return entry1;
+        }
+        int w1 = weights[entrySlots[entry1]];
+        int w2 = weights[entrySlots[entry2]];
+        return w1 > w2 || (w1 == w2 && entry1 < entry2) ? entry1 : entry2;
+    }
+
+    /**
+     * Returns the heaviest entry in {@code [from, to)}, the first one among
+     * equally heavy entries.
+     */
+    private int heaviest(int from, int to) {
+        int n = entrySlots.length;
+        int ret = -1;
+        for (int lo = from + n, hi = to + n; lo < hi; lo >>= 1, hi >>= 1) {
+            if ((lo & 1) == 1) {
+                ret = heavier(ret, tree[lo++]);
+            }
+            if ((hi & 1) == 1) {
+                ret = heavier(ret, tree[--hi]);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the id of the locale whose strings are chosen by
+     * {@link Dict#some(LocaleFallback)}, or -1 if the dict has no non empty
+     * string.
+     */
+    private int chosenLocaleId(int slot, LocaleFallback fallback, Map<Integer, Integer> chosenLocaleIds) {
+        Integer ret = chosenLocaleIds.get(slot);
+        if (ret == null) {
+            Dict dict = dicts[slot];
+            int i = dict.someIndex(fallback);
+            ret = i < 0 ? -1 : dict.localeIdAt(i);
+            chosenLocaleIds.put(slot, ret);
+        }
+        return ret;
+    }
+
+    private static boolean startsWith(Dict dict, int localeId, String folded) {
+        ImmutableList<String> strings = dict.stringsAt(dict.indexOfId(localeId));
+        for (String s : strings) {
+            if (DictMatcher.fold(s)
+                           .startsWith(folded)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns an estimate in bytes of the memory taken by the index, assuming
+     * a 64 bit JVM with compressed references. Dicts themselves are not
+     * counted, as they are supposedly held by the caller anyway.
+     */
+    public long memoryFootprint() {
+        // references take as much as ints
+        return Footprints.intArray(ids.length) + Footprints.intArray(dicts.length)
+                + Footprints.intArray(weights.length) + Footprints.charArray(keys.length)
+                + Footprints.intArray(keyOffsets.length) + Footprints.intArray(entrySlots.length)
+                + Footprints.intArray(localeStarts.length) + Footprints.intArray(tree.length);
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import java.util.Arrays;
+import java.util.Locale;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Small bit signatures of a list of dicts, to quickly skip the dicts which
+ * can't contain a text before calling {@link Dict#contains(String)} on the
+ * others.
+ *
+ * <p>
+ * The signature of a dict is a Bloom filter of the pairs of consecutive chars
+ * of its strings, lowercased as {@link Dict#contains(String)} does and
+ * folded like in {@link DictMatcher}. A dict may only contain a text if its
+ * signature has all the bits of the text signature, which takes a few
+ * bitwise operations to check. Texts shorter than two chars have an empty
+ * signature and can't skip any dict.
+ * </p>
+ *
+ * <pre>
+ * DictSignatures signatures = DictSignatures.of(dicts);
+ * int[] found = signatures.search("trento"); // positions in dicts
+ * </pre>
+ *
+ * @author David Leoni
+ * @since 2.0
+ */
+@ParametersAreNonnullByDefault
+@Immutable
+public final class DictSignatures {
+
+    /**
+     * Default bits of each signature
+     */
+    public static final int DEFAULT_BITS = 256;
+
+    private final ImmutableList<Dict> dicts;
+
+    /**
+     * Longs of each signature
+     */
+    private final int words;
+
+    /**
+     * The signature of the i-th dict takes {@link #words} longs starting from
+     * {@code i * words}
+     */
+    private final long[] signatures;
+
+    private DictSignatures(ImmutableList<Dict> dicts, int words, long[] signatures) {
+        this.dicts = dicts;
+        this.words = words;
+        this.signatures = signatures;
+    }
+
+    /**
+     * Computes signatures of {@link #DEFAULT_BITS} bits for the provided
+     * dicts.
+     */
+    public static DictSignatures of(Iterable<Dict> dicts) {
+        return of(dicts, DEFAULT_BITS);
+    }
+
+    /**
+     * Computes signatures of the given number of bits for the provided dicts.
+     * Longer signatures take more memory but skip more dicts, especially when
+     * dicts have long strings.
+     *
+     * @param bits
+     *            a positive multiple of 64
+     */
+    public static DictSignatures of(Iterable<Dict> dicts, int bits) {
+        checkArgument(bits > 0 && bits % 64 == 0, "Bits must be a positive multiple of 64, found instead %s", bits);
+        ImmutableList<Dict> list = ImmutableList.copyOf(dicts);
+        int words = bits / 64;
+        long[] signatures = new long[list.size() * words];
+        for (int d = 0; d < list.size(); d++) {
+            Dict dict = list.get(d);
+            int offset = d * words;
+            for (int i = 0; i < dict.localeCount(); i++) {
+                Locale locale = LocaleRegistry.locale(dict.localeIdAt(i));
+                if (!Dict.hasOwnLowerCase(locale)) {
+                    locale = Locale.ROOT;
+                }
+                for (String s : dict.stringsAt(i)) {
+                    addBigrams(s.toLowerCase(locale), signatures, offset, words);
+                }
+            }
+        }
+        return new DictSignatures(list, words, signatures);
+    }
+
+    private static void addBigrams(String low, long[] signature, int offset, int words) {
+        int bits = words * 64;
+        for (int j = 0; j + 1 < low.length(); j++) {
+            int bit = bit(low.charAt(j), low.charAt(j + 1), bits);
+            signature[offset + (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private static int bit(char c1, char c2, int bits) {
+        int gram = (DictMatcher.fold(c1) << 16) | DictMatcher.fold(c2);
+        // multiplicative hashing, taking the high bits
+        return (int) (((gram * 0x9E3779B97F4A7C15L) >>> 32) % bits);
+    }
+
+    /**
+     * Returns the signature of a text, with only the bits set for all the ways
+     * {@link Dict#contains(String)} may lowercase it.
+     */
+    private long[] signature(String text) {
+        long[] ret = null;
+        for (String lowText : Dict.lowerCaseForms(text)) {
+            long[] other = new long[words];
+            addBigrams(lowText, other, 0, words);
+            if (ret == null) {
+                ret = other;
+            } else {
+                for (int w = 0; w < words; w++) {
+                    ret[w] &= other[w];
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the number of dicts
+     */
+    public int size() {
+        return dicts.size();
+    }
+
+    /**
+     * Returns the i-th dict
+     */
+    public Dict get(int i) {
+        return dicts.get(i);
+    }
+
+    /**
+     * Returns the bits of each signature
+     */
+    public int bits() {
+        return words * 64;
+    }
+
+    /**
+     * Returns false if the i-th dict surely doesn't contain the provided text,
+     * true if it may contain it.
+     */
+    public boolean mayContain(int i, String text) {
+        checkElementIndex(i, dicts.size());
+        checkNotNull(text);
+        return mayContain(i, signature(text));
+    }
+
+    private boolean mayContain(int i, long[] signature) {
+        int offset = i * words;
+        for (int w = 0; w < words; w++) {
+            if ((signature[w] & ~signatures[offset + w]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the positions of the dicts containing the provided text, see
+     * {@link Dict#contains(String)}. Only the dicts whose signature matches
+     * the text one are actually checked.
+     *
+     * @return the positions sorted in ascending order
+     */
+    public int[] search(String text) {
+        checkNotNull(text);
+        long[] signature = signature(text);
+        int[] ret = new int[16];
+        int n = 0;
+        for (int i = 0; i < dicts.size(); i++) {
+            if (mayContain(i, signature) && dicts.get(i)
+                                                 .contains(text)) {
+                if (n == ret.length) {
+                    ret = Arrays.copyOf(ret, n * 2);
+                }
+                ret[n++] = i;
+            }
+        }
+        return Arrays.copyOf(ret, n);
+    }
+
+    /**
+     * Returns how many dicts would be actually checked by
+     * {@link #search(String)} for the provided text, i.e. to measure the
+     * false positive rate of signatures on a given collection.
+     */
+    public int candidateCount(String text) {
+        checkNotNull(text);
+        long[] signature = signature(text);
+        int ret = 0;
+        for (int i = 0; i < dicts.size(); i++) {
+            if (mayContain(i, signature)) {
+                ret++;
+            }
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,519 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Read-only collection of dicts stored in a memory-mapped file, for large
+ * catalogs which would be too expensive to load on heap. Dicts are written
+ * once with {@link #write(Iterable, File)} and then served by their position
+ * in the written collection. Opening a store only reads its header, and
+ * strings are decoded from the file only when asked for:
+ *
+ * <pre>
+ * DictStore.write(dicts, file);
+ * DictStore store = DictStore.open(file);
+ * String title = store.str(3, Locale.ITALIAN);
+ * </pre>
+ *
+ * <p>
+ * File layout is (ints are big endian, varints as in {@link Ser}):
+ * </p>
+ *
+ * <pre>
+ * header       magic int, version int, dict count int, index offset int,
+ *              locale count int, locale table offset int
+ * records      for each dict: varint locale count, then for each locale its
+ *              varint position in the locale table, varint byte length of the
+ *              rest of the block, varint string count and the strings
+ * locale table language tags of the locales used in the store
+ * index        one int per dict with the offset of its record
+ * </pre>
+ *
+ * where strings are a varint byte length followed by chars encoded as in
+ * {@link ModifiedUtf8}. Since a mapped buffer is limited to 2GB, so is the file.
+ *
+ * <p>
+ * The store is thread safe. The mapping is released when the store is garbage
+ * collected.
+ * </p>
+ *
+ * @author David Leoni
+ * @since 2.0
+ */
+@ParametersAreNonnullByDefault
+@ThreadSafe
+public final class DictStore {
+
+    private static final int MAGIC = 0x546f6453; // "TodS"
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 24;
+
+    private final MappedByteBuffer buffer;
+
+    private final int size;
+
+    private final int indexOffset;
+
+    /**
+     * Locales of the locale table, in file order
+     */
+    private final Locale[] locales;
+
+    /**
+     * Position in {@link #locales} of each {@link LocaleRegistry} id, -1 if
+     * not in the store
+     */
+    private final int[] positionsById;
+
+    private DictStore(MappedByteBuffer buffer, int size, int indexOffset, Locale[] locales) {
+        this.buffer = buffer;
+        this.size = size;
+        this.indexOffset = indexOffset;
+        this.locales = locales;
+        int maxId = -1;
+        int[] ids = new int[locales.length];
+        for (int i = 0; i < locales.length; i++) {
+            ids[i] = LocaleRegistry.id(locales[i]);
+            maxId = Math.max(maxId, ids[i]);
+        }
+        this.positionsById = new int[maxId + 1];
+        Arrays.fill(positionsById, -1);
+        for (int i = 0; i < ids.length; i++) {
+            positionsById[ids[i]] = i;
+        }
+    }
+
+    /**
+     * Writes the provided dicts to a store file, overwriting it. Dicts will
+     * get as id their position in the iteration order.
+     *
+     * @return the number of written dicts
+     * @throws IllegalArgumentException
+     *             if a locale can't be written as a language tag, see
+     *             {@link DictJson}. Each locale is checked before writing the
+     *             first dict having it, and on any failure the partially
+     *             written file is deleted.
+     */
+    public static int write(Iterable<Dict> dicts, File file) throws IOException {
+        checkNotNull(dicts);
+        checkNotNull(file);
+
+        Map<Locale, Integer> localePositions = new LinkedHashMap<Locale, Integer>();
+        List<String> tags = new ArrayList<String>();
+        int[] offsets = new int[16];
+        int n = 0;
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        DataOutputStream blockOut = new DataOutputStream(block);
+
+        FileOutputStream fos = new FileOutputStream(file);
+        boolean written = false;
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 1 << 16));
+            out.write(new byte[HEADER_BYTES]);
+            for (Dict dict : dicts) {
+                if (n == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, n * 2);
+                }
+                offsets[n++] = checkedSize(out);
+                Ser.writeVarInt(dict.localeCount(), out);
+                for (int i = 0; i < dict.localeCount(); i++) {
+                    Locale locale = LocaleRegistry.locale(dict.localeIdAt(i));
+                    Integer pos = localePositions.get(locale);
+                    if (pos == null) {
+                        tags.add(DictJson.languageTag(locale));
+                        pos = localePositions.size();
+                        localePositions.put(locale, pos);
+                    }
+                    block.reset();
+                    ImmutableList<String> strings = dict.stringsAt(i);
+                    Ser.writeVarInt(strings.size(), blockOut);
+                    for (String s : strings) {
+                        writeString(s, blockOut);
+                    }
+                    Ser.writeVarInt(pos, out);
+                    Ser.writeVarInt(block.size(), out);
+                    block.writeTo(out);
+                }
+            }
+            int localeTableOffset = checkedSize(out);
+            for (String tag : tags) {
+                writeString(tag, out);
+            }
+            int indexOffset = checkedSize(out);
+            for (int i = 0; i < n; i++) {
+                out.writeInt(offsets[i]);
+            }
+            checkedSize(out);
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC)
+                  .putInt(VERSION)
+                  .putInt(n)
+                  .putInt(indexOffset)
+                  .putInt(localePositions.size())
+                  .putInt(localeTableOffset);
+            header.flip();
+            fos.getChannel()
+               .write(header, 0);
+            written = true;
+        } finally {
+            try {
+                fos.close();
+            } finally {
+                if (!written) {
+                    file.delete();
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Returns the bytes written so far, checking they still fit a mapped
+     * buffer. {@link DataOutputStream#size()} stops at
+     * {@link Integer#MAX_VALUE} instead of overflowing, so reaching it means
+     * the size is not known anymore.
+     */
+    private static int checkedSize(DataOutputStream out) throws IOException {
+        int ret = out.size();
+        if (ret == Integer.MAX_VALUE) {
+            throw new IOException("Dict store can't be larger than 2GB!");
+        }
+        return ret;
+    }
+
+    /**
+     * Writes a string as its byte length followed by its chars encoded as in
+     * {@link ModifiedUtf8}.
+     */
+    private static void writeString(String s, DataOutputStream out) throws IOException {
+        Ser.writeVarInt(ModifiedUtf8.byteLength(s), out);
+        ModifiedUtf8.write(s, out);
+    }
+
+    /**
+     * Opens a store previously written with {@link #write(Iterable, File)}.
+     * Only the header and the locale table are read, so opening takes the
+     * same time whatever the number of dicts.
+     *
+     * @throws IOException
+     *             if the file can't be read or is not a dict store.
+     */
+    public static DictStore open(File file) throws IOException {
+        checkNotNull(file);
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        MappedByteBuffer buffer;
+        try {
+            long length = raf.length();
+            if (length < HEADER_BYTES || length > Integer.MAX_VALUE) {
+                throw new IOException("Not a dict store file: " + file);
+            }
+            buffer = raf.getChannel()
+                        .map(FileChannel.MapMode.READ_ONLY, 0, length);
+        } finally {
+            raf.close();
+        }
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a dict store file: " + file);
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported dict store version " + version + " in file " + file);
+        }
+        int size = buffer.getInt(8);
+        int indexOffset = buffer.getInt(12);
+        int localeCount = buffer.getInt(16);
+        int localeTableOffset = buffer.getInt(20);
+        // each tag takes at least a byte
+        if (size < 0 || indexOffset < HEADER_BYTES || (long) indexOffset + 4L * size != buffer.limit()
+                || localeTableOffset < HEADER_BYTES || localeTableOffset > indexOffset || localeCount < 0
+                || localeCount > indexOffset - localeTableOffset) {
+            throw new IOException("Corrupted dict store file: " + file);
+        }
+        Locale[] locales = new Locale[localeCount];
+        int[] pos = new int[] { localeTableOffset };
+        for (int i = 0; i < localeCount; i++) {
+            String tag = readTag(buffer, pos, indexOffset, file);
+            locales[i] = LocaleRegistry.internIfRoom(TodUtils.languageTagToLocale(tag));
+            if (locales[i] == null) {
+                throw new IOException("Too many distinct locales, can't register locale " + tag + " of file " + file);
+            }
+        }
+        return new DictStore(buffer, size, indexOffset, locales);
+    }
+
+    /**
+     * Returns the number of dicts in the store
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Offset of the record of the dict with provided id
+     */
+    private int recordOffset(int id) {
+        checkElementIndex(id, size, "dict id");
+        return buffer.getInt(indexOffset + 4 * id);
+    }
+
+    /**
+     * Returns the dict with provided id, decoding all of its strings.
+     *
+     * @throws IndexOutOfBoundsException
+     *             if id is not in the store.
+     */
+    public Dict get(int id) {
+        int[] pos = new int[] { recordOffset(id) };
+        int localeCount = readVarInt(buffer, pos);
+        Dict.Builder dictb = Dict.builder();
+        for (int i = 0; i < localeCount; i++) {
+            Locale locale = locales[readVarInt(buffer, pos)];
+            readVarInt(buffer, pos);
+            int n = readVarInt(buffer, pos);
+            String[] strings = new String[n];
+            for (int j = 0; j < n; j++) {
+                strings[j] = readString(buffer, pos);
+            }
+            dictb.put(locale, strings);
+        }
+        return dictb.build();
+    }
+
+    /**
+     * Returns the translations in the given locale of the dict with provided
+     * id, see {@link Dict#get(Locale)}.
+     *
+     * @throws IndexOutOfBoundsException
+     *             if id is not in the store.
+     */
+    public ImmutableList<String> get(int id, Locale locale) {
+        checkNotNull(locale);
+        int[] pos = new int[] { recordOffset(id) };
+        if (!seek(pos, positionOf(locale))) {
+            return ImmutableList.of();
+        }
+        int n = readVarInt(buffer, pos);
+        String[] strings = new String[n];
+        for (int j = 0; j < n; j++) {
+            strings[j] = readString(buffer, pos);
+        }
+        return ImmutableList.copyOf(strings);
+    }
+
+    /**
+     * Returns the first translation in the given locale of the dict with
+     * provided id, see {@link Dict#str(Locale)}. Only that string is decoded.
+     *
+     * @throws IndexOutOfBoundsException
+     *             if id is not in the store.
+     */
+    public String str(int id, Locale locale) {
+        checkNotNull(locale);
+        int[] pos = new int[] { recordOffset(id) };
+        if (!seek(pos, positionOf(locale))) {
+            return "";
+        }
+        readVarInt(buffer, pos);
+        return readString(buffer, pos);
+    }
+
+    /**
+     * Returns the locales of the dict with provided id, see
+     * {@link Dict#locales()}.
+     *
+     * @throws IndexOutOfBoundsException
+     *             if id is not in the store.
+     */
+    public ImmutableSet<Locale> locales(int id) {
+        int[] pos = new int[] { recordOffset(id) };
+        int localeCount = readVarInt(buffer, pos);
+        ImmutableSet.Builder<Locale> retb = ImmutableSet.builder();
+        for (int i = 0; i < localeCount; i++) {
+            retb.add(locales[readVarInt(buffer, pos)]);
+            int blockLength = readVarInt(buffer, pos);
+            pos[0] += blockLength;
+        }
+        return retb.build();
+    }
+
+    /**
+     * Tries its best to return a meaningful string of the dict with provided
+     * id, following the given fallback chain, see
+     * {@link Dict#some(LocaleFallback)}. Only the returned string is decoded.
+     *
+     * @throws IndexOutOfBoundsException
+     *             if id is not in the store.
+     */
+    public LocalizedString some(int id, LocaleFallback fallback) {
+        checkNotNull(fallback);
+        int offset = recordOffset(id);
+        int[] pos = new int[1];
+        for (int k = 0; k < fallback.size(); k++) {
+            int p = positionOfId(fallback.localeIdAt(k));
+            pos[0] = offset;
+            if (seek(pos, p) && skipToNonEmpty(pos)) {
+                return LocalizedString.of(locales[p], readString(buffer, pos));
+            }
+        }
+        int en = positionOfId(LocaleRegistry.ENGLISH_ID);
+        pos[0] = offset;
+        if (seek(pos, en) && skipToNonEmpty(pos)) {
+            return LocalizedString.of(Locale.ENGLISH, readString(buffer, pos));
+        }
+        pos[0] = offset;
+        int localeCount = readVarInt(buffer, pos);
+        for (int i = 0; i < localeCount; i++) {
+            Locale locale = locales[readVarInt(buffer, pos)];
+            int blockLength = readVarInt(buffer, pos);
+            int next = pos[0] + blockLength;
+            if (skipToNonEmpty(pos)) {
+                return LocalizedString.of(locale, readString(buffer, pos));
+            }
+            pos[0] = next;
+        }
+        return LocalizedString.of();
+    }
+
+    private int positionOf(Locale locale) {
+        return positionOfId(LocaleRegistry.idIfPresent(locale));
+    }
+
+    private int positionOfId(int localeId) {
+        return localeId >= 0 && localeId < positionsById.length ? positionsById[localeId] : -1;
+    }
+
+    /**
+     * Moves {@code pos} from the start of a record to the string count of the
+     * block of the locale at provided position in the locale table.
+     *
+     * @return false if the record has no such locale
+     */
+    private boolean seek(int[] pos, int localePosition) {
+        if (localePosition < 0) {
+            return false;
+        }
+        int localeCount = readVarInt(buffer, pos);
+        for (int i = 0; i < localeCount; i++) {
+            int p = readVarInt(buffer, pos);
+            int blockLength = readVarInt(buffer, pos);
+            if (p == localePosition) {
+                return true;
+            }
+            pos[0] += blockLength;
+        }
+        return false;
+    }
+
+    /**
+     * Moves {@code pos} from the string count of a block to its first non
+     * empty string.
+     *
+     * @return false if there is no such string
+     */
+    private boolean skipToNonEmpty(int[] pos) {
+        int n = readVarInt(buffer, pos);
+        for (int j = 0; j < n; j++) {
+            int start = pos[0];
+            int byteLength = readVarInt(buffer, pos);
+            if (byteLength > 0) {
+                pos[0] = start;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads a varint at {@code pos[0]}, advancing it.
+     */
+    private static int readVarInt(ByteBuffer buffer, int[] pos) {
+        int p = pos[0];
+        int ret = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = buffer.get(p++);
+            ret |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                pos[0] = p;
+                return ret;
+            }
+        }
+    }
+
+    /**
+     * Reads a tag of the locale table at {@code pos[0]}, advancing it, and
+     * checking it ends before {@code end}.
+     *
+     * @throws IOException
+     *             if the tag doesn't fit the table
+     */
+    private static String readTag(ByteBuffer buffer, int[] pos, int end, File file) throws IOException {
+        int p = pos[0];
+        int byteLength = 0;
+        for (int shift = 0;; shift += 7) {
+            if (p >= end || shift > 28) {
+                throw new IOException("Corrupted locale table in dict store file: " + file);
+            }
+            byte b = buffer.get(p++);
+            byteLength |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        if (byteLength < 0 || byteLength > end - p) {
+            throw new IOException("Corrupted locale table in dict store file: " + file);
+        }
+        pos[0] = p + byteLength;
+        return ModifiedUtf8.read(buffer, p, pos[0]);
+    }
+
+    /**
+     * Reads a string at {@code pos[0]}, advancing it.
+     */
+    private static String readString(ByteBuffer buffer, int[] pos) {
+        int byteLength = readVarInt(buffer, pos);
+        int from = pos[0];
+        pos[0] = from + byteLength;
+        return ModifiedUtf8.read(buffer, from, pos[0]);
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Compact storage for the strings of a large collection of dicts, which often
+ * share long prefixes like "Comune di ..." or "Provincia autonoma di ...".
+ * Each distinct string is kept once and gets an int id, its position in
+ * sorted order.
+ *
+ * <pre>
+ * DictStringPool pool = DictStringPool.builder()
+ *                                     .add(dicts)
+ *                                     .build();
+ * int id = pool.id("Comune di Trento");
+ * String s = pool.get(id);
+ * </pre>
+ *
+ * <p>
+ * Sorted strings are front coded in blocks: the first string of a block is
+ * stored whole, each following one as the length of the prefix it shares with
+ * the previous string plus the rest of its chars. Everything goes in a single
+ * char array, so there is no per string object overhead, but getting a string
+ * takes decoding on average half a block, see {@link #blockSize()}. Use
+ * {@link #memoryFootprint()} and {@link #stringsFootprint()} to decide if it
+ * is worth it for a given workload.
+ * </p>
+ *
+ * <p>
+ * A {@link DictColumn} created with {@link DictColumn#of(DictStringPool)}
+ * keeps its strings in a pool, as ids instead of references.
+ * </p>
+ *
+ * @author David Leoni
+ * @since 2.0
+ */
+@ParametersAreNonnullByDefault
+@Immutable
+public final class DictStringPool {
+
+    /**
+     * Default number of strings in a front coded block
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 16;
+
+    /**
+     * Bytes taken by a String object without its chars, that is its chars
+     * reference and its hash, see {@link Footprints}
+     */
+    private static final long STRING_BYTES = Footprints.object(Footprints.REFERENCE_BYTES + 4);
+
+    private final int blockSize;
+
+    private final int size;
+
+    private final long addedCount;
+
+    private final long charCount;
+
+    /**
+     * Front coded blocks, lengths are written as chars of 15 bits with the
+     * high bit set when more follow.
+     */
+    private final char[] data;
+
+    /**
+     * Position of each block in {@link #data}
+     */
+    private final int[] blockStarts;
+
+    private DictStringPool(int blockSize, int size, long addedCount, long charCount, char[] data,
+            int[] blockStarts) {
+        this.blockSize = blockSize;
+        this.size = size;
+        this.addedCount = addedCount;
+        this.charCount = charCount;
+        this.data = data;
+        this.blockStarts = blockStarts;
+    }
+
+    /**
+     * Collects the strings to pool.
+     */
+    @NotThreadSafe
+    public static final class Builder {
+
+        private final int blockSize;
+
+        private final Set<String> strings = new HashSet<String>();
+
+        private long addedCount = 0;
+
+        private Builder(int blockSize) {
+            this.blockSize = blockSize;
+        }
+
+        /**
+         * Adds a string to the pool, if not already present.
+         */
+        public Builder add(String string) {
+            strings.add(checkNotNull(string));
+            addedCount++;
+            return this;
+        }
+
+        /**
+         * Adds all the strings of a dict to the pool.
+         */
+        public Builder add(Dict dict) {
+            checkNotNull(dict);
+            for (int i = 0; i < dict.localeCount(); i++) {
+                ImmutableList<String> strs = dict.stringsAt(i);
+                for (int j = 0; j < strs.size(); j++) {
+                    add(strs.get(j));
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Adds all the strings of the provided dicts to the pool.
+         */
+        public Builder add(Iterable<Dict> dicts) {
+            checkNotNull(dicts);
+            for (Dict dict : dicts) {
+                add(dict);
+            }
+            return this;
+        }
+
+        /**
+         * Builds the pool of the strings added so far.
+         */
+        public DictStringPool build() {
+            String[] sorted = strings.toArray(new String[strings.size()]);
+            Arrays.sort(sorted);
+            int[] blockStarts = new int[(sorted.length + blockSize - 1) / blockSize];
+            StringBuilder sb = new StringBuilder();
+            long charCount = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                String s = sorted[i];
+                charCount += s.length();
+                if (i % blockSize == 0) {
+                    blockStarts[i / blockSize] = sb.length();
+                    writeLength(sb, s.length());
+                    sb.append(s);
+                } else {
+                    String prev = sorted[i - 1];
+                    int prefix = 0;
+                    int max = Math.min(prev.length(), s.length());
+                    while (prefix < max && prev.charAt(prefix) == s.charAt(prefix)) {
+                        prefix++;
+                    }
+                    writeLength(sb, prefix);
+                    writeLength(sb, s.length() - prefix);
+                    sb.append(s, prefix, s.length());
+                }
+            }
+            char[] data = new char[sb.length()];
+            sb.getChars(0, sb.length(), data, 0);
+            return new DictStringPool(blockSize, sorted.length, addedCount, charCount, data, blockStarts);
+        }
+    }
+
+    /**
+     * Returns a builder for a pool with blocks of
+     * {@link #DEFAULT_BLOCK_SIZE} strings.
+     */
+    public static Builder builder() {
+        return new Builder(DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Returns a builder for a pool with blocks of the given number of strings.
+     * Bigger blocks save more memory but make getting strings slower, a block
+     * of size 1 disables front coding.
+     */
+    public static Builder builder(int blockSize) {
+        checkArgument(blockSize > 0, "Block size must be positive, found instead %s", blockSize);
+        return new Builder(blockSize);
+    }
+
+    private static void writeLength(StringBuilder sb, int length) {
+        int v = length;
+        while (v >= 0x8000) {
+            sb.append((char) ((v & 0x7FFF) | 0x8000));
+            v >>>= 15;
+        }
+        sb.append((char) v);
+    }
+
+    /**
+     * Reads a length at the given position, returning it in the high int and
+     * the position after it in the low one.
+     */
+    private long readLength(int pos) {
+        int p = pos;
+        int ret = 0;
+        int shift = 0;
+        char c;
+        do {
+            c = data[p++];
+            ret |= (c & 0x7FFF) << shift;
+            shift += 15;
+        } while ((c & 0x8000) != 0);
+        return ((long) ret << 32) | p;
+    }
+
+    /**
+     * Returns the string with the given id.
+     */
+    public String get(int id) {
+        checkElementIndex(id, size);
+        int pos = blockStarts[id / blockSize];
+        long lp = readLength(pos);
+        int length = (int) (lp >>> 32);
+        pos = (int) lp;
+        StringBuilder sb = new StringBuilder(length + 16);
+        sb.append(data, pos, length);
+        pos += length;
+        for (int k = id % blockSize; k > 0; k--) {
+            lp = readLength(pos);
+            int prefix = (int) (lp >>> 32);
+            lp = readLength((int) lp);
+            int suffix = (int) (lp >>> 32);
+            pos = (int) lp;
+            sb.setLength(prefix);
+            sb.append(data, pos, suffix);
+            pos += suffix;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Compares the first string of a block with the provided one, without
+     * decoding it.
+     */
+    private int compareHead(int block, String s) {
+        long lp = readLength(blockStarts[block]);
+        int length = (int) (lp >>> 32);
+        int pos = (int) lp;
+        int max = Math.min(length, s.length());
+        for (int i = 0; i < max; i++) {
+            char c = data[pos + i];
+            if (c != s.charAt(i)) {
+                return c - s.charAt(i);
+            }
+        }
+        return length - s.length();
+    }
+
+    /**
+     * Returns the id of the provided string, or -1 if it is not in the pool.
+     */
+    public int id(String string) {
+        checkNotNull(string);
+        // last block whose head is not after the string
+        int lo = 0;
+        int hi = blockStarts.length - 1;
+        if (hi < 0 || compareHead(0, string) > 0) {
+            return -1;
+        }
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (compareHead(mid, string) <= 0) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        // decodes the block one string after the other
+        int id = lo * blockSize;
+        int last = Math.min(size, id + blockSize);
+        long lp = readLength(blockStarts[lo]);
+        int length = (int) (lp >>> 32);
+        int pos = (int) lp;
+        StringBuilder sb = new StringBuilder(string.length() + 16);
+        sb.append(data, pos, length);
+        pos += length;
+        while (true) {
+            int cmp = compare(sb, string);
+            if (cmp == 0) {
+                return id;
+            }
+            if (cmp > 0 || ++id == last) {
+                return -1;
+            }
+            lp = readLength(pos);
+            int prefix = (int) (lp >>> 32);
+            lp = readLength((int) lp);
+            int suffix = (int) (lp >>> 32);
+            pos = (int) lp;
+            sb.setLength(prefix);
+            sb.append(data, pos, suffix);
+            pos += suffix;
+        }
+    }
+
+    private static int compare(CharSequence s1, String s2) {
+        int max = Math.min(s1.length(), s2.length());
+        for (int i = 0; i < max; i++) {
+            char c = s1.charAt(i);
+            if (c != s2.charAt(i)) {
+                return c - s2.charAt(i);
+            }
+        }
+        return s1.length() - s2.length();
+    }
+
+    /**
+     * Returns true if the provided string is in the pool
+     */
+    public boolean contains(String string) {
+        return id(string) >= 0;
+    }
+
+    /**
+     * Returns the number of distinct strings in the pool
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of strings added to the builder, duplicates included
+     */
+    public long addedCount() {
+        return addedCount;
+    }
+
+    /**
+     * Returns the number of strings in a front coded block. Getting a string
+     * decodes on average half a block.
+     */
+    public int blockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Returns the total number of chars of the distinct strings
+     */
+    public long charCount() {
+        return charCount;
+    }
+
+    /**
+     * Returns the number of chars actually stored after front coding,
+     * lengths included.
+     */
+    public long encodedCharCount() {
+        return data.length;
+    }
+
+    /**
+     * Returns an estimate in bytes of the memory taken by the pool, assuming a
+     * 64 bit JVM with compressed references.
+     */
+    public long memoryFootprint() {
+        return Footprints.charArray(data.length) + Footprints.intArray(blockStarts.length);
+    }
+
+    /**
+     * Returns an estimate in bytes of the memory taken by the distinct strings
+     * of the pool as String objects, assuming a 64 bit JVM with compressed
+     * references and an average string length.
+     */
+    public long stringsFootprint() {
+        if (size == 0) {
+            return 0;
+        }
+        return size * (STRING_BYTES + Footprints.charArray(charCount / size));
+    }
+
+    @Override
+    public String toString() {
+        return "DictStringPool{size=" + size + ", addedCount=" + addedCount + ", charCount=" + charCount
+                + ", encodedCharCount=" + data.length + "}";
+    }
+}
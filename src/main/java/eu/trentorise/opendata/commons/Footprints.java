@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons;
+
+/**
+ * Sizes used by the {@code memoryFootprint()} estimates of indexes and
+ * compact dict storages. They assume a 64 bit JVM with compressed references,
+ * where objects have a 12 bytes header, arrays a 16 bytes one (header plus
+ * length), references take 4 bytes and everything is padded to 8 bytes.
+ *
+ * @author David Leoni
+ * @since 2.0
+ */
+final class Footprints {
+
+    static final int OBJECT_HEADER_BYTES = 12;
+    static final int ARRAY_HEADER_BYTES = 16;
+    static final int REFERENCE_BYTES = 4;
+
+    private Footprints() {
+    }
+
+    /**
+     * Rounds bytes up to the 8 bytes padding of objects.
+     */
+    static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Returns the bytes taken by an object with the given bytes of fields.
+     */
+    static long object(long fieldBytes) {
+        return align(OBJECT_HEADER_BYTES + fieldBytes);
+    }
+
+    /**
+     * Returns the bytes taken by a {@code byte[]} of given length.
+     */
+    static long byteArray(long length) {
+        return align(ARRAY_HEADER_BYTES + length);
+    }
+
+    /**
+     * Returns the bytes taken by a {@code char[]} of given length.
+     */
+    static long charArray(long length) {
+        return align(ARRAY_HEADER_BYTES + 2L * length);
+    }
+
+    /**
+     * Returns the bytes taken by an {@code int[]} of given length.
+     */
+    static long intArray(long length) {
+        return align(ARRAY_HEADER_BYTES + 4L * length);
+    }
+
+    /**
+     * Returns the bytes taken by a {@code long[]} of given length.
+     */
+    static long longArray(long length) {
+        return align(ARRAY_HEADER_BYTES + 8L * length);
+    }
+}
@@ -0,0 +1,618 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Compressed set of non negative int ids, in the style of roaring bitmaps:
+ * ids are split in chunks of 2^16 by their high 16 bits, and each non empty
+ * chunk stores its low 16 bits in the smallest of three containers, a sorted
+ * array for sparse chunks, a 8 KB bitmap for dense ones and a list of runs
+ * for consecutive ids. So memory grows with the ids stored and how scattered
+ * they are, not with the highest id.
+ *
+ * @author David Leoni
+ * @since 2.0
+ */
+@NotThreadSafe
+final class IdBitmap {
+
+    /**
+     * Ids in a chunk
+     */
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Longs of a bitmap container
+     */
+    private static final int WORDS = CHUNK_SIZE / 64;
+
+    /**
+     * Maximum ids of an array container, beyond which a bitmap is smaller
+     */
+    private static final int MAX_ARRAY_SIZE = 4096;
+
+    /**
+     * Maximum runs of a run container, beyond which a bitmap is smaller
+     */
+    private static final int MAX_RUNS = 2048;
+
+    private static final char[] NO_KEYS = new char[0];
+
+    private static final Container[] NO_CONTAINERS = new Container[0];
+
+    /**
+     * High 16 bits of the ids in each container, sorted.
+     */
+    private char[] keys = NO_KEYS;
+
+    private Container[] containers = NO_CONTAINERS;
+
+    /**
+     * Number of used keys and containers
+     */
+    private int chunks = 0;
+
+    private int cardinality = 0;
+
+    /**
+     * Low 16 bits of the ids in a chunk.
+     */
+    private abstract static class Container {
+
+        abstract int cardinality();
+
+        abstract boolean contains(int low);
+
+        /**
+         * Adds an absent value, returning the container which holds the
+         * result, this one or a new one.
+         */
+        abstract Container add(int low);
+
+        /**
+         * Removes a present value, returning the container which holds the
+         * result, this one or a new one.
+         */
+        abstract Container remove(int low);
+
+        /**
+         * Sets the bits of the values in the {@link #WORDS} longs from
+         * {@code offset}
+         */
+        abstract void toWords(long[] words, int offset);
+
+        abstract Container copy();
+
+        abstract long memoryFootprint();
+
+        long[] toWords() {
+            long[] ret = new long[WORDS];
+            toWords(ret, 0);
+            return ret;
+        }
+    }
+
+    private static final class ArrayContainer extends Container {
+
+        private char[] values;
+
+        private int size;
+
+        ArrayContainer(char[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        boolean contains(int low) {
+            return Arrays.binarySearch(values, 0, size, (char) low) >= 0;
+        }
+
+        @Override
+        Container add(int low) {
+            if (size == MAX_ARRAY_SIZE) {
+                long[] words = toWords();
+                words[low >>> 6] |= 1L << low;
+                return container(words, size + 1);
+            }
+            int pos = -Arrays.binarySearch(values, 0, size, (char) low) - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(Math.max(4, size * 2), MAX_ARRAY_SIZE));
+            }
+            System.arraycopy(values, pos, values, pos + 1, size - pos);
+            values[pos] = (char) low;
+            size++;
+            return this;
+        }
+
+        @Override
+        Container remove(int low) {
+            int pos = Arrays.binarySearch(values, 0, size, (char) low);
+            System.arraycopy(values, pos + 1, values, pos, size - pos - 1);
+            size--;
+            return this;
+        }
+
+        @Override
+        void toWords(long[] words, int offset) {
+            for (int i = 0; i < size; i++) {
+                words[offset + (values[i] >>> 6)] |= 1L << values[i];
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(values.clone(), size);
+        }
+
+        @Override
+        long memoryFootprint() {
+            return Footprints.object(Footprints.REFERENCE_BYTES + 4) + Footprints.charArray(values.length);
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+
+        private final long[] words;
+
+        private int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(int low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        Container add(int low) {
+            words[low >>> 6] |= 1L << low;
+            cardinality++;
+            // once in a while, checks whether runs got smaller
+            return cardinality % MAX_ARRAY_SIZE == 0 ? container(words, cardinality) : this;
+        }
+
+        @Override
+        Container remove(int low) {
+            words[low >>> 6] &= ~(1L << low);
+            cardinality--;
+            return cardinality <= MAX_ARRAY_SIZE ? container(words, cardinality) : this;
+        }
+
+        @Override
+        void toWords(long[] words, int offset) {
+            for (int w = 0; w < WORDS; w++) {
+                words[offset + w] |= this.words[w];
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        long memoryFootprint() {
+            return Footprints.object(Footprints.REFERENCE_BYTES + 4) + Footprints.longArray(WORDS);
+        }
+    }
+
+    private static final class RunContainer extends Container {
+
+        /**
+         * First value of each run, sorted
+         */
+        private char[] starts;
+
+        /**
+         * Last value of each run
+         */
+        private char[] lasts;
+
+        private int runs;
+
+        private int cardinality;
+
+        RunContainer(char[] starts, char[] lasts, int runs, int cardinality) {
+            this.starts = starts;
+            this.lasts = lasts;
+            this.runs = runs;
+            this.cardinality = cardinality;
+        }
+
+        /**
+         * Returns the last run starting at or before the value, or -1 if there
+         * is none.
+         */
+        private int run(int low) {
+            int pos = Arrays.binarySearch(starts, 0, runs, (char) low);
+            return pos >= 0 ? pos : -pos - 2;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(int low) {
+            int r = run(low);
+            return r >= 0 && low <= lasts[r];
+        }
+
+        @Override
+        Container add(int low) {
+            int r = run(low);
+            boolean extendsPrevious = r >= 0 && lasts[r] + 1 == low;
+            boolean extendsNext = r + 1 < runs && starts[r + 1] == low + 1;
+            cardinality++;
+            if (extendsPrevious && extendsNext) {
+                lasts[r] = lasts[r + 1];
+                delete(r + 1);
+            } else if (extendsPrevious) {
+                lasts[r] = (char) low;
+            } else if (extendsNext) {
+                starts[r + 1] = (char) low;
+            } else {
+                insert(r + 1, low, low);
+            }
+            return checked();
+        }
+
+        @Override
+        Container remove(int low) {
+            int r = run(low);
+            cardinality--;
+            if (starts[r] == lasts[r]) {
+                delete(r);
+            } else if (starts[r] == low) {
+                starts[r]++;
+            } else if (lasts[r] == low) {
+                lasts[r]--;
+            } else {
+                int last = lasts[r];
+                lasts[r] = (char) (low - 1);
+                insert(r + 1, low + 1, last);
+            }
+            return checked();
+        }
+
+        private void insert(int r, int start, int last) {
+            if (runs == starts.length) {
+                int capacity = Math.max(4, runs * 2);
+                starts = Arrays.copyOf(starts, capacity);
+                lasts = Arrays.copyOf(lasts, capacity);
+            }
+            System.arraycopy(starts, r, starts, r + 1, runs - r);
+            System.arraycopy(lasts, r, lasts, r + 1, runs - r);
+            starts[r] = (char) start;
+            lasts[r] = (char) last;
+            runs++;
+        }
+
+        private void delete(int r) {
+            System.arraycopy(starts, r + 1, starts, r, runs - r - 1);
+            System.arraycopy(lasts, r + 1, lasts, r, runs - r - 1);
+            runs--;
+        }
+
+        /**
+         * Returns this container, or a smaller one with the same values.
+         */
+        private Container checked() {
+            return 4L * runs > Math.min(2L * cardinality, 8L * WORDS) ? container(toWords(), cardinality) : this;
+        }
+
+        @Override
+        void toWords(long[] words, int offset) {
+            for (int r = 0; r < runs; r++) {
+                int start = starts[r];
+                int end = lasts[r] + 1;
+                int startWord = start >>> 6;
+                int endWord = (end - 1) >>> 6;
+                long startMask = -1L << start;
+                long endMask = (end & 63) == 0 ? -1L : -1L >>> (64 - (end & 63));
+                if (startWord == endWord) {
+                    words[offset + startWord] |= startMask & endMask;
+                } else {
+                    words[offset + startWord] |= startMask;
+                    for (int w = startWord + 1; w < endWord; w++) {
+                        words[offset + w] = -1L;
+                    }
+                    words[offset + endWord] |= endMask;
+                }
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new RunContainer(starts.clone(), lasts.clone(), runs, cardinality);
+        }
+
+        @Override
+        long memoryFootprint() {
+            return Footprints.object(2 * Footprints.REFERENCE_BYTES + 8) + 2 * Footprints.charArray(starts.length);
+        }
+    }
+
+    /**
+     * Returns the smallest container holding the values set in the provided
+     * {@link #WORDS} longs, of which there are {@code cardinality}.
+     */
+    private static Container container(long[] words, int cardinality) {
+        int runs = 0;
+        long carry = 0;
+        for (long w : words) {
+            // bits set whose previous one is not
+            runs += Long.bitCount(w & ~((w << 1) | carry));
+            carry = w >>> 63;
+        }
+        if (2L * cardinality <= Math.min(4L * runs, 8L * WORDS)) {
+            char[] values = new char[cardinality];
+            int n = 0;
+            for (int w = 0; w < WORDS; w++) {
+                for (long bits = words[w]; bits != 0; bits &= bits - 1) {
+                    values[n++] = (char) ((w << 6) + Long.numberOfTrailingZeros(bits));
+                }
+            }
+            return new ArrayContainer(values, cardinality);
+        }
+        if (4L * runs < 8L * WORDS) {
+            char[] starts = new char[runs];
+            char[] lasts = new char[runs];
+            int r = -1;
+            int previous = -2;
+            for (int w = 0; w < WORDS; w++) {
+                for (long bits = words[w]; bits != 0; bits &= bits - 1) {
+                    int value = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    if (value != previous + 1) {
+                        starts[++r] = (char) value;
+                    }
+                    lasts[r] = (char) value;
+                    previous = value;
+                }
+            }
+            return new RunContainer(starts, lasts, runs, cardinality);
+        }
+        return new BitmapContainer(words, cardinality);
+    }
+
+    IdBitmap() {
+    }
+
+    private int chunk(int id) {
+        return Arrays.binarySearch(keys, 0, chunks, (char) (id >>> 16));
+    }
+
+    private static void checkId(int id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Id can't be negative, found instead " + id);
+        }
+    }
+
+    /**
+     * Returns the number of ids in the set
+     */
+    int cardinality() {
+        return cardinality;
+    }
+
+    boolean contains(int id) {
+        checkId(id);
+        int c = chunk(id);
+        return c >= 0 && containers[c].contains(id & 0xFFFF);
+    }
+
+    /**
+     * Adds the id to the set.
+     *
+     * @return true if the id was not already present
+     */
+    boolean add(int id) {
+        checkId(id);
+        int c = chunk(id);
+        int low = id & 0xFFFF;
+        if (c < 0) {
+            c = -c - 1;
+            if (chunks == keys.length) {
+                int capacity = Math.max(4, chunks * 2);
+                keys = Arrays.copyOf(keys, capacity);
+                containers = Arrays.copyOf(containers, capacity);
+            }
+            System.arraycopy(keys, c, keys, c + 1, chunks - c);
+            System.arraycopy(containers, c, containers, c + 1, chunks - c);
+            keys[c] = (char) (id >>> 16);
+            containers[c] = new ArrayContainer(new char[] { (char) low }, 1);
+            chunks++;
+        } else if (containers[c].contains(low)) {
+            return false;
+        } else {
+            containers[c] = containers[c].add(low);
+        }
+        cardinality++;
+        return true;
+    }
+
+    /**
+     * Removes the id from the set.
+     *
+     * @return true if the id was present
+     */
+    boolean remove(int id) {
+        checkId(id);
+        int c = chunk(id);
+        int low = id & 0xFFFF;
+        if (c < 0 || !containers[c].contains(low)) {
+            return false;
+        }
+        if (containers[c].cardinality() == 1) {
+            System.arraycopy(keys, c + 1, keys, c, chunks - c - 1);
+            System.arraycopy(containers, c + 1, containers, c, chunks - c - 1);
+            containers[--chunks] = null;
+        } else {
+            containers[c] = containers[c].remove(low);
+        }
+        cardinality--;
+        return true;
+    }
+
+    /**
+     * Returns an independent copy of this set
+     */
+    IdBitmap copy() {
+        IdBitmap ret = new IdBitmap();
+        ret.keys = Arrays.copyOf(keys, chunks);
+        ret.containers = new Container[chunks];
+        for (int c = 0; c < chunks; c++) {
+            ret.containers[c] = containers[c].copy();
+        }
+        ret.chunks = chunks;
+        ret.cardinality = cardinality;
+        return ret;
+    }
+
+    /**
+     * Keeps only the ids also present in the other set.
+     */
+    void and(IdBitmap other) {
+        combine(other, false);
+    }
+
+    /**
+     * Adds the ids of the other set.
+     */
+    void or(IdBitmap other) {
+        IdBitmap ret = new IdBitmap();
+        ret.keys = new char[chunks + other.chunks];
+        ret.containers = new Container[chunks + other.chunks];
+        int i = 0;
+        int j = 0;
+        while (i < chunks || j < other.chunks) {
+            if (j == other.chunks || (i < chunks && keys[i] < other.keys[j])) {
+                ret.append(keys[i], containers[i++]);
+            } else if (i == chunks || other.keys[j] < keys[i]) {
+                ret.append(other.keys[j], other.containers[j++].copy());
+            } else {
+                long[] words = containers[i++].toWords();
+                other.containers[j].toWords(words, 0);
+                ret.append(other.keys[j++], words);
+            }
+        }
+        assign(ret);
+    }
+
+    /**
+     * Removes the ids present in the other set.
+     */
+    void andNot(IdBitmap other) {
+        combine(other, true);
+    }
+
+    /**
+     * Computes the and, or if {@code not} is true the and not, of this set
+     * with the other one.
+     */
+    private void combine(IdBitmap other, boolean not) {
+        IdBitmap ret = new IdBitmap();
+        ret.keys = new char[chunks];
+        ret.containers = new Container[chunks];
+        int j = 0;
+        for (int i = 0; i < chunks; i++) {
+            while (j < other.chunks && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < other.chunks && other.keys[j] == keys[i]) {
+                long[] words = containers[i].toWords();
+                long[] otherWords = other.containers[j].toWords();
+                for (int w = 0; w < WORDS; w++) {
+                    words[w] = not ? words[w] & ~otherWords[w] : words[w] & otherWords[w];
+                }
+                ret.append(keys[i], words);
+            } else if (not) {
+                ret.append(keys[i], containers[i]);
+            }
+        }
+        assign(ret);
+    }
+
+    private void append(char key, Container container) {
+        keys[chunks] = key;
+        containers[chunks++] = container;
+        cardinality += container.cardinality();
+    }
+
+    private void append(char key, long[] words) {
+        int count = 0;
+        for (long w : words) {
+            count += Long.bitCount(w);
+        }
+        if (count > 0) {
+            append(key, container(words, count));
+        }
+    }
+
+    private void assign(IdBitmap other) {
+        keys = other.keys;
+        containers = other.containers;
+        chunks = other.chunks;
+        cardinality = other.cardinality;
+    }
+
+    /**
+     * Returns the ids as a {@link BitSet}, which is as large as the highest
+     * id.
+     */
+    BitSet toBitSet() {
+        if (chunks == 0) {
+            return new BitSet();
+        }
+        long[] words = new long[(keys[chunks - 1] + 1) * WORDS];
+        for (int c = 0; c < chunks; c++) {
+            containers[c].toWords(words, keys[c] * WORDS);
+        }
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Returns an estimate in bytes of the memory taken by the set, see
+     * {@link Footprints}
+     */
+    long memoryFootprint() {
+        long ret = Footprints.object(2 * Footprints.REFERENCE_BYTES + 8) + Footprints.charArray(keys.length)
+                + Footprints.intArray(containers.length);
+        for (int c = 0; c < chunks; c++) {
+            ret += containers[c].memoryFootprint();
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * An immutable chain of locales to try in order when looking for a string in
+ * a {@link Dict}, see {@link Dict#some(LocaleFallback)}. Meant to be built
+ * once (i.e. per user profile) and reused for many dicts.
+ *
+ * <p>
+ * Each requested locale is followed by its truncations, as in the
+ * <a href="https://tools.ietf.org/html/rfc4647#section-3.4" target="_blank">
+ * BCP 47 lookup</a> algorithm, and the chain always ends with
+ * {@link Locale#ROOT}. For example, requesting {@code it-IT} and {@code en}
+ * gives the chain {@code it-IT, it, en, ROOT}.
+ * </p>
+ *
+ * @author David Leoni
+ * @since 2.0
+ */
+@ParametersAreNonnullByDefault
+@Immutable
+public final class LocaleFallback {
+
+    private static final LocaleFallback INSTANCE = new LocaleFallback(ImmutableList.of(Locale.ROOT));
+
+    private final ImmutableList<Locale> locales;
+
+    /**
+     * {@link LocaleRegistry} ids of {@link #locales}
+     */
+    private final int[] localeIds;
+
+    private LocaleFallback(ImmutableList<Locale> locales) {
+        this.locales = locales;
+        this.localeIds = new int[locales.size()];
+        for (int i = 0; i < localeIds.length; i++) {
+            localeIds[i] = LocaleRegistry.id(locales.get(i));
+        }
+    }
+
+    /**
+     * Returns a fallback chain only made of {@link Locale#ROOT}
+     */
+    public static LocaleFallback of() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns a fallback chain made by the provided locales, each followed by
+     * its truncations, and by {@link Locale#ROOT}.
+     */
+    public static LocaleFallback of(Locale... locales) {
+        return of(Arrays.asList(locales));
+    }
+
+    /**
+     * Returns a fallback chain made by the provided locales, each followed by
+     * its truncations, and by {@link Locale#ROOT}.
+     */
+    public static LocaleFallback of(Iterable<Locale> locales) {
+        checkNotNull(locales);
+        Set<Locale> chain = new LinkedHashSet<Locale>();
+        for (Locale locale : locales) {
+            checkNotNull(locale);
+            String tag = locale.toLanguageTag();
+            while (!tag.isEmpty() && !"und".equals(tag)) {
+                chain.add(LocaleRegistry.intern(Locale.forLanguageTag(tag)));
+                tag = truncate(tag);
+            }
+        }
+        chain.remove(Locale.ROOT);
+        chain.add(Locale.ROOT);
+        return new LocaleFallback(ImmutableList.copyOf(chain));
+    }
+
+    /**
+     * Removes the last subtag from a language tag, along with any single
+     * character subtag (like the '-x' of private uses) that would be left at
+     * the end.
+     *
+     * @return the truncated tag, or the empty string if there was only one
+     *         subtag
+     */
+    private static String truncate(String tag) {
+        int pos = tag.lastIndexOf('-');
+        if (pos < 0) {
+            return "";
+        }
+        String ret = tag.substring(0, pos);
+        int prev = ret.lastIndexOf('-');
+        if (prev >= 0 && prev == ret.length() - 2) {
+            ret = ret.substring(0, prev);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the locales of the chain, in order.
+     */
+    public ImmutableList<Locale> locales() {
+        return locales;
+    }
+
+    /**
+     * Returns the {@link LocaleRegistry} id of the i-th locale of the chain
+     */
+    int localeIdAt(int i) {
+        return localeIds[i];
+    }
+
+    /**
+     * Returns the number of locales in the chain
+     */
+    int size() {
+        return localeIds.length;
+    }
+
+    @Override
+    public int hashCode() {
+        return locales.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final LocaleFallback other = (LocaleFallback) obj;
+        return this.locales.equals(other.locales);
+    }
+
+    @Override
+    public String toString() {
+        return "LocaleFallback{" + locales + "}";
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Process-wide registry of locales. Each distinct locale gets a small int id
+ * (starting from 0) and a canonical instance, so that equal locales coming
+ * from different parsers can be compared by id or by reference.
+ *
+ * <p>
+ * Ids are only valid within the running JVM, so never persist them. Locales
+ * are never removed from the registry: it is meant for the few hundred
+ * languages found in real data, not for arbitrary user input. Readers of
+ * serialized dicts register the locales they find only while the registry
+ * holds less than {@link #MAX_INPUT_SIZE} of them, and fail beyond that.
+ * </p>
+ *
+ * @author David Leoni
+ * @since 2.0
+ */
+@ThreadSafe
+public final class LocaleRegistry {
+
+    /**
+     * Id of {@link Locale#ROOT}
+     */
+    public static final int ROOT_ID = 0;
+
+    /**
+     * Id of {@link Locale#ENGLISH}
+     */
+    public static final int ENGLISH_ID = 1;
+
+    private static final ConcurrentHashMap<Locale, Integer> IDS = new ConcurrentHashMap<Locale, Integer>();
+
+    /**
+     * Registry size beyond which locales found in input data are not
+     * registered anymore, see {@link #internIfRoom(Locale)}
+     */
+    static final int MAX_INPUT_SIZE = 4096;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final Object LOCK = new Object();
+
+    /**
+     * Canonical locales indexed by id, only the first {@link #size} are
+     * meaningful. Slots are written before increasing the size, and the array
+     * is replaced by a bigger copy when full.
+     */
+    private static volatile Locale[] locales = new Locale[INITIAL_CAPACITY];
+
+    /**
+     * Number of registered locales, published after {@link #locales} and
+     * before the new id goes in {@link #IDS}.
+     */
+    private static volatile int size = 0;
+
+    static {
+        id(Locale.ROOT);
+        id(Locale.ENGLISH);
+    }
+
+    private LocaleRegistry() {
+    }
+
+    /**
+     * Returns the id of the provided locale, registering it if it wasn't
+     * already.
+     */
+    public static int id(Locale locale) {
+        Integer ret = IDS.get(checkNotNull(locale));
+        if (ret != null) {
+            return ret;
+        }
+        synchronized (LOCK) {
+            ret = IDS.get(locale);
+            if (ret == null) {
+                ret = size;
+                if (ret == locales.length) {
+                    locales = Arrays.copyOf(locales, 2 * ret);
+                }
+                locales[ret] = locale;
+                size = ret + 1;
+                IDS.put(locale, ret);
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * Returns the canonical instance of a locale found in input data,
+     * registering it only if the registry holds less than
+     * {@link #MAX_INPUT_SIZE} locales.
+     *
+     * @return the canonical locale, or null if it wasn't registered and there
+     *         is no more room.
+     */
+    @Nullable
+    static Locale internIfRoom(Locale locale) {
+        int ret = idIfPresent(locale);
+        if (ret < 0) {
+            synchronized (LOCK) {
+                if (size >= MAX_INPUT_SIZE && idIfPresent(locale) < 0) {
+                    return null;
+                }
+                ret = id(locale);
+            }
+        }
+        return locale(ret);
+    }
+
+    /**
+     * Returns the id of the provided locale, or -1 if it was never registered.
+     * Differently from {@link #id(Locale)}, the registry is not modified.
+     */
+    public static int idIfPresent(Locale locale) {
+        Integer ret = IDS.get(checkNotNull(locale));
+        return ret == null ? -1 : ret;
+    }
+
+    /**
+     * Returns the canonical locale having the provided id.
+     *
+     * @throws IndexOutOfBoundsException
+     *             if no locale was registered with such id.
+     */
+    public static Locale locale(int id) {
+        // size is read first, so the array seen has all the published slots
+        checkElementIndex(id, size, "locale id");
+        return locales[id];
+    }
+
+    /**
+     * Returns the canonical instance of the provided locale, registering it
+     * if it wasn't already.
+     */
+    public static Locale intern(Locale locale) {
+        return locale(id(locale));
+    }
+
+    /**
+     * Returns the number of registered locales. Registered ids go from 0
+     * included to the returned number excluded.
+     */
+    public static int size() {
+        return size;
+    }
+}
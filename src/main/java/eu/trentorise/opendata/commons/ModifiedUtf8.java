@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+
+/**
+ * Chars encoded like in modified UTF-8, as written by
+ * {@link DataOutput#writeUTF(String)} but without its length limit: '\u0000'
+ * and surrogates are encoded separately, so any Java string, including
+ * unpaired surrogates, survives the trip. Shared by {@link Ser} and
+ * {@link DictStore}, which prefix strings with different lengths.
+ *
+ * @author David Leoni
+ * @since 2.0
+ */
+final class ModifiedUtf8 {
+
+    private ModifiedUtf8() {
+    }
+
+    /**
+     * Returns the number of bytes of the encoded string
+     */
+    static int byteLength(String s) {
+        int ret = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            ret += (c >= 0x0001 && c <= 0x007F) ? 1 : (c <= 0x07FF ? 2 : 3);
+        }
+        return ret;
+    }
+
+    /**
+     * Writes the chars of the provided string, without any length.
+     */
+    static void write(String s, DataOutput out) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                out.writeByte(c);
+            } else if (c <= 0x07FF) {
+                out.writeByte(0xC0 | (c >> 6));
+                out.writeByte(0x80 | (c & 0x3F));
+            } else {
+                out.writeByte(0xE0 | (c >> 12));
+                out.writeByte(0x80 | ((c >> 6) & 0x3F));
+                out.writeByte(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * Reads a single char.
+     *
+     * @throws StreamCorruptedException
+     *             if the bytes are not a valid encoding.
+     */
+    static char readChar(DataInput in) throws IOException {
+        int b = in.readUnsignedByte();
+        if (b < 0x80) {
+            return (char) b;
+        } else if ((b & 0xE0) == 0xC0) {
+            return (char) (((b & 0x1F) << 6) | (in.readUnsignedByte() & 0x3F));
+        } else if ((b & 0xF0) == 0xE0) {
+            int b2 = in.readUnsignedByte();
+            int b3 = in.readUnsignedByte();
+            return (char) (((b & 0x0F) << 12) | ((b2 & 0x3F) << 6) | (b3 & 0x3F));
+        } else {
+            throw new StreamCorruptedException("Malformed string encoding!");
+        }
+    }
+
+    /**
+     * Reads the string encoded in the bytes of the buffer going from
+     * {@code from} included to {@code end} excluded, without changing the
+     * buffer position. A char truncated at the end is dropped.
+     */
+    static String read(ByteBuffer buffer, int from, int end) {
+        char[] chars = new char[end - from];
+        int n = 0;
+        int p = from;
+        while (p < end) {
+            int b = buffer.get(p++) & 0xFF;
+            if (b < 0x80) {
+                chars[n++] = (char) b;
+            } else if (p >= end || ((b & 0xE0) != 0xC0 && p + 1 >= end)) {
+                break;
+            } else if ((b & 0xE0) == 0xC0) {
+                chars[n++] = (char) (((b & 0x1F) << 6) | (buffer.get(p++) & 0x3F));
+            } else {
+                int b2 = buffer.get(p++);
+                int b3 = buffer.get(p++);
+                chars[n++] = (char) (((b & 0x0F) << 12) | ((b2 & 0x3F) << 6) | (b3 & 0x3F));
+            }
+        }
+        return new String(chars, 0, n);
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compact serialized form shared by {@link Dict} and {@link LocalizedString},
+ * written in place of the actual objects via {@code writeReplace}. Layout is:
+ *
+ * <pre>
+ * version     byte, currently 1
+ * type        byte, {@link #DICT}, {@link #LOCALIZED_STRING} or {@link #DICT_PATCH}
+ * dict        varint locale count, then for each locale the locale, varint string count and strings
+ * localized   locale, string
+ * patch       varint edit count, then for each edit its locale, varint position, varint removed
+ *             string count and strings, varint added string count and strings
+ * locale      byte {@link #TAG} and the BCP 47 language tag, or byte {@link #LEGACY} and language,
+ *             country and variant strings for locales the tag can't represent (i.e. "it_IT" as language)
+ * </pre>
+ *
+ * where strings are a varint char count followed by chars encoded as in
+ * {@link ModifiedUtf8}. Varints use 7 bits per byte, least significant group
+ * first.
+ *
+ * @author David Leoni
+ * @since 2.0
+ */
+final class Ser implements Externalizable {
+
+    private static final long serialVersionUID = 1L;
+
+    static final byte VERSION = 1;
+
+    static final byte DICT = 1;
+
+    static final byte LOCALIZED_STRING = 2;
+
+    static final byte DICT_PATCH = 3;
+
+    /**
+     * Locale written as its BCP 47 language tag
+     */
+    static final byte TAG = 0;
+
+    /**
+     * Locale written as language, country and variant, when its tag doesn't
+     * give back an equal locale
+     */
+    static final byte LEGACY = 1;
+
+    /**
+     * Max number of elements allocated upfront for a length read from the
+     * stream, longer arrays grow while actually reading the elements.
+     */
+    private static final int MAX_PREALLOCATED = 1024;
+
+    private byte type;
+
+    private Object object;
+
+    /**
+     * For {@link Externalizable} use only
+     */
+    public Ser() {
+    }
+
+    Ser(byte type, Object object) {
+        this.type = type;
+        this.object = object;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeByte(VERSION);
+        out.writeByte(type);
+        switch (type) {
+        case DICT:
+            writeDict((Dict) object, out);
+            break;
+        case LOCALIZED_STRING:
+            ALocalizedString ls = (ALocalizedString) object;
+            writeLocale(ls.loc(), out);
+            writeString(ls.str(), out);
+            break;
+        case DICT_PATCH:
+            writePatch((DictPatch) object, out);
+            break;
+        default:
+            throw new InvalidObjectException("Unknown type: " + type);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new StreamCorruptedException("Unsupported serialized form version: " + version);
+        }
+        type = in.readByte();
+        switch (type) {
+        case DICT:
+            object = readDict(in);
+            break;
+        case LOCALIZED_STRING:
+            Locale locale = readLocale(in);
+            object = LocalizedString.of(locale, readString(in));
+            break;
+        case DICT_PATCH:
+            object = readPatch(in);
+            break;
+        default:
+            throw new StreamCorruptedException("Unknown type: " + type);
+        }
+    }
+
+    private Object readResolve() {
+        return object;
+    }
+
+    private static void writeDict(Dict dict, DataOutput out) throws IOException {
+        writeVarInt(dict.localeCount(), out);
+        for (int i = 0; i < dict.localeCount(); i++) {
+            writeLocale(LocaleRegistry.locale(dict.localeIdAt(i)), out);
+            writeVarInt(dict.stringsAt(i)
+                            .size(),
+                    out);
+            for (String s : dict.stringsAt(i)) {
+                writeString(s, out);
+            }
+        }
+    }
+
+    private static Dict readDict(DataInput in) throws IOException {
+        Dict.Builder dictb = Dict.builder();
+        int localeCount = readVarInt(in);
+        for (int i = 0; i < localeCount; i++) {
+            Locale locale = readLocale(in);
+            dictb.put(locale, readStrings(in));
+        }
+        return dictb.build();
+    }
+
+    private static void writePatch(DictPatch patch, DataOutput out) throws IOException {
+        writeVarInt(patch.edits()
+                         .size(),
+                out);
+        for (DictPatch.Edit edit : patch.edits()) {
+            writeLocale(edit.locale(), out);
+            writeVarInt(edit.position(), out);
+            writeStrings(edit.removed(), out);
+            writeStrings(edit.added(), out);
+        }
+    }
+
+    private static DictPatch readPatch(DataInput in) throws IOException {
+        int n = readVarInt(in);
+        List<DictPatch.Edit> edits = new ArrayList<DictPatch.Edit>(Math.min(n, MAX_PREALLOCATED));
+        try {
+            for (int i = 0; i < n; i++) {
+                Locale locale = readLocale(in);
+                int position = readVarInt(in);
+                List<String> removed = readStrings(in);
+                edits.add(DictPatch.Edit.of(locale, position, removed, readStrings(in)));
+            }
+            return DictPatch.of(edits);
+        } catch (IllegalArgumentException ex) {
+            throw new StreamCorruptedException("Invalid patch: " + ex.getMessage());
+        }
+    }
+
+    private static void writeStrings(List<String> strings, DataOutput out) throws IOException {
+        writeVarInt(strings.size(), out);
+        for (String s : strings) {
+            writeString(s, out);
+        }
+    }
+
+    private static List<String> readStrings(DataInput in) throws IOException {
+        int n = readVarInt(in);
+        List<String> ret = new ArrayList<String>(Math.min(n, MAX_PREALLOCATED));
+        for (int i = 0; i < n; i++) {
+            ret.add(readString(in));
+        }
+        return ret;
+    }
+
+    private static void writeLocale(Locale locale, DataOutput out) throws IOException {
+        if (Locale.ROOT.equals(locale)) {
+            out.writeByte(TAG);
+            writeString("", out);
+            return;
+        }
+        String tag = locale.toLanguageTag();
+        if (Locale.forLanguageTag(tag)
+                  .equals(locale)) {
+            out.writeByte(TAG);
+            writeString(tag, out);
+        } else if (locale.getScript()
+                         .isEmpty()
+                && locale.getExtensionKeys()
+                         .isEmpty()) {
+            out.writeByte(LEGACY);
+            writeString(locale.getLanguage(), out);
+            writeString(locale.getCountry(), out);
+            writeString(locale.getVariant(), out);
+        } else {
+            throw new InvalidObjectException("Can't serialize locale " + locale);
+        }
+    }
+
+    private static Locale readLocale(DataInput in) throws IOException {
+        byte kind = in.readByte();
+        Locale locale;
+        switch (kind) {
+        case TAG:
+            locale = TodUtils.languageTagToLocale(readString(in));
+            break;
+        case LEGACY:
+            String language = readString(in);
+            String country = readString(in);
+            locale = new Locale(language, country, readString(in));
+            break;
+        default:
+            throw new StreamCorruptedException("Unknown locale kind: " + kind);
+        }
+        Locale ret = LocaleRegistry.internIfRoom(locale);
+        if (ret == null) {
+            throw new InvalidObjectException("Too many distinct locales, can't register locale " + locale);
+        }
+        return ret;
+    }
+
+    static void writeVarInt(int value, DataOutput out) throws IOException {
+        int v = value;
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int ret = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            ret |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (ret < 0) {
+                    throw new StreamCorruptedException("Found negative length: " + ret);
+                }
+                return ret;
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint!");
+    }
+
+    static void writeString(String s, DataOutput out) throws IOException {
+        writeVarInt(s.length(), out);
+        ModifiedUtf8.write(s, out);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int n = readVarInt(in);
+        char[] chars = new char[Math.min(n, MAX_PREALLOCATED)];
+        for (int i = 0; i < n; i++) {
+            if (i == chars.length) {
+                chars = Arrays.copyOf(chars, (int) Math.min(n, 2L * i));
+            }
+            chars[i] = ModifiedUtf8.readChar(in);
+        }
+        return new String(chars);
+    }
+}
@@ -69,7 +69,10 @@ public final class TodUtils {
 
     /**
      * Converts a language code to Java Locale. On null input returns
-     * {@link Locale#ROOT}
+     * {@link Locale#ROOT}. If the locale is already registered in
+     * {@link LocaleRegistry} its canonical instance is returned, otherwise the
+     * parsed locale is returned without registering it, so parsing arbitrary
+     * tags doesn't grow the registry.
      * 
      * Notice Java 7 introduced {@link Locale#forLanguageTag(String)}, but that
      * method throws null pointer exception on null string, which unfortunately
@@ -84,7 +87,9 @@ public final class TodUtils {
             LOG.warning("Found null locale, returning Locale.ROOT");
             return Locale.ROOT;
         }
-        return Locale.forLanguageTag(languageTag);
+        Locale ret = Locale.forLanguageTag(languageTag);
+        int id = LocaleRegistry.idIfPresent(ret);
+        return id < 0 ? ret : LocaleRegistry.locale(id);
     }
 
     /**
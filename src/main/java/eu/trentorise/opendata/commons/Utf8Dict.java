@@ -0,0 +1,389 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A dict holding its strings as UTF-8 bytes instead of {@link String}s, for
+ * large mostly latin catalogs which are kept in memory only to be written
+ * out again. Strings are decoded only when asked with {@link #str(Locale)}
+ * or {@link #get(Locale)}, while {@link #writeUtf8To(Locale, OutputStream)}
+ * writes them out as they are stored.
+ *
+ * <pre>
+ * Utf8Dict title = Utf8Dict.of(Dict.of(Locale.ITALIAN, "Città di Trento"));
+ * title.writeUtf8To(Locale.ITALIAN, response.getOutputStream());
+ * </pre>
+ *
+ * <p>
+ * All the strings go in a single byte array, delimited by an array of
+ * offsets. Locales are kept as {@link LocaleRegistry} ids in the same order
+ * of the dict they come from. Decoded strings are not cached, so a string
+ * read often is better kept in a {@link Dict}, see {@link #toDict()}.
+ * </p>
+ *
+ * <p>
+ * Strings with unpaired surrogates have no UTF-8 form, so dicts holding them
+ * are rejected.
+ * </p>
+ *
+ * @author David Leoni
+ * @since 2.0
+ */
+@ParametersAreNonnullByDefault
+@Immutable
+public final class Utf8Dict {
+
+    private static final Utf8Dict INSTANCE = new Utf8Dict(new int[0], new int[] { 0 }, new int[] { 0 }, new byte[0]);
+
+    private final int[] localeIds;
+
+    /**
+     * Strings of locale {@code localeIds[i]} are the ones in
+     * {@code [slotStarts[i], slotStarts[i + 1])}
+     */
+    private final int[] slotStarts;
+
+    /**
+     * The bytes of string j are in {@code [stringStarts[j], stringStarts[j + 1])}
+     */
+    private final int[] stringStarts;
+
+    private final byte[] bytes;
+
+    private Utf8Dict(int[] localeIds, int[] slotStarts, int[] stringStarts, byte[] bytes) {
+        this.localeIds = localeIds;
+        this.slotStarts = slotStarts;
+        this.stringStarts = stringStarts;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Returns the empty dict
+     */
+    public static Utf8Dict of() {
+        return INSTANCE;
+    }
+
+    /**
+     * Encodes the strings of the provided dict
+     *
+     * @throws IllegalArgumentException
+     *             if a string has unpaired surrogates.
+     */
+    public static Utf8Dict of(Dict dict) {
+        checkNotNull(dict);
+        int n = dict.localeCount();
+        if (n == 0) {
+            return INSTANCE;
+        }
+        int[] localeIds = new int[n];
+        int[] slotStarts = new int[n + 1];
+        int stringCount = 0;
+        for (int i = 0; i < n; i++) {
+            localeIds[i] = dict.localeIdAt(i);
+            slotStarts[i] = stringCount;
+            stringCount += dict.stringsAt(i)
+                               .size();
+        }
+        slotStarts[n] = stringCount;
+
+        int[] stringStarts = new int[stringCount + 1];
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            for (String s : dict.stringsAt(i)) {
+                checkArgument(isWellFormed(s), "String can't have unpaired surrogates, found instead %s", s);
+                stringStarts[j++] = out.size();
+                byte[] encoded = s.getBytes(StandardCharsets.UTF_8);
+                out.write(encoded, 0, encoded.length);
+            }
+        }
+        stringStarts[j] = out.size();
+        return new Utf8Dict(localeIds, slotStarts, stringStarts, out.toByteArray());
+    }
+
+    /**
+     * Returns false if the provided string has unpaired surrogates, which
+     * {@link String#getBytes(java.nio.charset.Charset)} would replace with
+     * '?'
+     */
+    private static boolean isWellFormed(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.isHighSurrogate(c)) {
+                if (i + 1 == s.length() || !Character.isLowSurrogate(s.charAt(i + 1))) {
+                    return false;
+                }
+                i++;
+            } else if (Character.isLowSurrogate(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the position of the given locale, or -1 if not found
+     */
+    private int indexOf(Locale locale) {
+        int localeId = LocaleRegistry.idIfPresent(checkNotNull(locale));
+        for (int i = 0; i < localeIds.length; i++) {
+            if (localeIds[i] == localeId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String decode(int j) {
+        return new String(bytes, stringStarts[j], stringStarts[j + 1] - stringStarts[j], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the locales of the dict, in the order of the dict they come
+     * from.
+     */
+    public ImmutableSet<Locale> locales() {
+        ImmutableSet.Builder<Locale> retb = ImmutableSet.builder();
+        for (int localeId : localeIds) {
+            retb.add(LocaleRegistry.locale(localeId));
+        }
+        return retb.build();
+    }
+
+    /**
+     * Returns true if there is no non-empty translation, like
+     * {@link Dict#isEmpty()}
+     */
+    public boolean isEmpty() {
+        // only empty strings take no bytes
+        return bytes.length == 0;
+    }
+
+    /**
+     * Returns the number of strings in the given locale
+     */
+    public int count(Locale locale) {
+        int i = indexOf(locale);
+        return i < 0 ? 0 : slotStarts[i + 1] - slotStarts[i];
+    }
+
+    /**
+     * Decodes the strings in the given locale, see {@link Dict#get(Locale)}
+     */
+    public ImmutableList<String> get(Locale locale) {
+        int i = indexOf(locale);
+        if (i < 0) {
+            return ImmutableList.of();
+        }
+        ImmutableList.Builder<String> retb = ImmutableList.builder();
+        for (int j = slotStarts[i]; j < slotStarts[i + 1]; j++) {
+            retb.add(decode(j));
+        }
+        return retb.build();
+    }
+
+    /**
+     * Decodes the first string in the given locale, or returns the empty
+     * string if there is none, see {@link Dict#str(Locale)}
+     */
+    public String str(Locale locale) {
+        int i = indexOf(locale);
+        return i < 0 ? "" : decode(slotStarts[i]);
+    }
+
+    /**
+     * Returns the number of UTF-8 bytes of the first string in the given
+     * locale, 0 if there is none.
+     */
+    public int utf8Length(Locale locale) {
+        int i = indexOf(locale);
+        if (i < 0) {
+            return 0;
+        }
+        int j = slotStarts[i];
+        return stringStarts[j + 1] - stringStarts[j];
+    }
+
+    /**
+     * Writes the first string in the given locale as UTF-8 to the provided
+     * stream, without decoding it. Nothing is written if there is no string.
+     */
+    public void writeUtf8To(Locale locale, OutputStream out) throws IOException {
+        checkNotNull(out);
+        int i = indexOf(locale);
+        if (i >= 0) {
+            int j = slotStarts[i];
+            out.write(bytes, stringStarts[j], stringStarts[j + 1] - stringStarts[j]);
+        }
+    }
+
+    /**
+     * Puts the first string in the given locale as UTF-8 into the provided
+     * buffer, without decoding it. Nothing is put if there is no string.
+     *
+     * @throws java.nio.BufferOverflowException
+     *             if the buffer has less than {@link #utf8Length(Locale)}
+     *             bytes remaining
+     */
+    public void writeUtf8To(Locale locale, ByteBuffer buffer) {
+        checkNotNull(buffer);
+        int i = indexOf(locale);
+        if (i >= 0) {
+            int j = slotStarts[i];
+            buffer.put(bytes, stringStarts[j], stringStarts[j + 1] - stringStarts[j]);
+        }
+    }
+
+    /**
+     * Writes the i-th string in the given locale as UTF-8 to the provided
+     * stream, without decoding it.
+     */
+    public void writeUtf8To(Locale locale, int i, OutputStream out) throws IOException {
+        checkNotNull(out);
+        int k = indexOf(locale);
+        checkElementIndex(i, k < 0 ? 0 : slotStarts[k + 1] - slotStarts[k]);
+        int j = slotStarts[k] + i;
+        out.write(bytes, stringStarts[j], stringStarts[j + 1] - stringStarts[j]);
+    }
+
+    /**
+     * Returns an estimate in bytes of the memory taken by the dict, assuming a
+     * 64 bit JVM with compressed references.
+     */
+    public long memoryFootprint() {
+        return Footprints.object(4 * Footprints.REFERENCE_BYTES) + Footprints.intArray(localeIds.length)
+                + Footprints.intArray(slotStarts.length) + Footprints.intArray(stringStarts.length)
+                + Footprints.byteArray(bytes.length);
+    }
+
+    /**
+     * Decodes all the strings into a regular dict
+     */
+    public Dict toDict() {
+        if (localeIds.length == 0) {
+            return Dict.of();
+        }
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        ImmutableList<String>[] strings = new ImmutableList[localeIds.length];
+        for (int i = 0; i < localeIds.length; i++) {
+            String[] strs = new String[slotStarts[i + 1] - slotStarts[i]];
+            for (int j = 0; j < strs.length; j++) {
+                strs[j] = decode(slotStarts[i] + j);
+            }
+            strings[i] = ImmutableList.copyOf(strs);
+        }
+        return Dict.ofArrays(localeIds.clone(), strings);
+    }
+
+    /**
+     * Hash of the bytes of locale at position i, including the boundaries of
+     * its strings
+     */
+    private int slotHash(int i) {
+        int hash = 1;
+        for (int j = slotStarts[i]; j < slotStarts[i + 1]; j++) {
+            hash = 31 * hash + (stringStarts[j + 1] - stringStarts[j]);
+            for (int b = stringStarts[j]; b < stringStarts[j + 1]; b++) {
+                hash = 31 * hash + bytes[b];
+            }
+        }
+        return hash;
+    }
+
+    private boolean slotEquals(int i, Utf8Dict other, int k) {
+        int n = slotStarts[i + 1] - slotStarts[i];
+        if (n != other.slotStarts[k + 1] - other.slotStarts[k]) {
+            return false;
+        }
+        for (int s = 0; s < n; s++) {
+            int j = slotStarts[i] + s;
+            int oj = other.slotStarts[k] + s;
+            int length = stringStarts[j + 1] - stringStarts[j];
+            if (length != other.stringStarts[oj + 1] - other.stringStarts[oj]) {
+                return false;
+            }
+            for (int b = 0; b < length; b++) {
+                if (bytes[stringStarts[j] + b] != other.bytes[other.stringStarts[oj] + b]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        // like dicts, locales order doesn't matter
+        int hash = 0;
+        for (int i = 0; i < localeIds.length; i++) {
+            hash += LocaleRegistry.locale(localeIds[i])
+                                  .hashCode()
+                    ^ slotHash(i);
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final Utf8Dict other = (Utf8Dict) obj;
+        if (localeIds.length != other.localeIds.length) {
+            return false;
+        }
+        for (int i = 0; i < localeIds.length; i++) {
+            int k = -1;
+            for (int o = 0; o < other.localeIds.length; o++) {
+                if (other.localeIds[o] == localeIds[i]) {
+                    k = o;
+                    break;
+                }
+            }
+            if (k < 0 || !slotEquals(i, other, k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return toDict().toString();
+    }
+}
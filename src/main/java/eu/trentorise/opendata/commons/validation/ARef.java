@@ -19,6 +19,7 @@ import com.google.common.base.Preconditions;
 
 import eu.trentorise.opendata.commons.BuilderStylePublic;
 
+import java.io.IOException;
 import java.io.Serializable;
 import org.immutables.value.Value;
 
@@ -130,15 +131,50 @@ abstract class ARef implements Serializable {
      *             if both documentid and tracepath are empty.
      */
     public String uri() {
+        return appendUriTo(new StringBuilder()).toString();
+    }
+
+    /**
+     * Appends the same uri of {@link #uri()} without building intermediate
+     * strings.
+     *
+     * @return the provided appendable
+     * @throws IllegalStateException
+     *             if both documentid and tracepath are empty.
+     * @since 2.0
+     */
+    public <A extends Appendable> A appendUriTo(A appendable) throws IOException {
+        Preconditions.checkNotNull(appendable);
         if (getDocumentId().isEmpty() && (getTracePath().isEmpty())) {
             throw new IllegalStateException("Can't create an empty uri!");
         }
         if (getDocumentId().isEmpty()) {
-            return getTracePath();
-        } else if (getTracePath().isEmpty() || getTracePath().equals("*")) {
-            return getDocumentId();
+            appendable.append(getTracePath());
         } else {
-            return getDocumentId() + "#" + getTracePath();
+            appendable.append(getDocumentId());
+            if (!getTracePath().isEmpty() && !getTracePath().equals("*")) {
+                appendable.append('#')
+                          .append(getTracePath());
+            }
+        }
+        return appendable;
+    }
+
+    /**
+     * Appends the same uri of {@link #uri()} without building intermediate
+     * strings.
+     *
+     * @return the provided builder
+     * @throws IllegalStateException
+     *             if both documentid and tracepath are empty.
+     * @since 2.0
+     */
+    public StringBuilder appendUriTo(StringBuilder builder) {
+        try {
+            appendUriTo((Appendable) builder);
+        } catch (IOException ex) {
+            throw new IllegalStateException("StringBuilder shouldn't throw IOException!", ex);
         }
+        return builder;
     }
 }
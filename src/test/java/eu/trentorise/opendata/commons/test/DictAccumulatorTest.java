@@ -0,0 +1,134 @@
+/* 
+ * Copyright 2015 Trento Rise  (trentorise.eu) 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons.test;
+
+import com.google.common.collect.ImmutableList;
+import eu.trentorise.opendata.commons.Dict;
+import eu.trentorise.opendata.commons.DictAccumulator;
+import eu.trentorise.opendata.commons.LocalizedString;
+import eu.trentorise.opendata.commons.TodConfig;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.junit.Assert;
+import static org.junit.Assert.assertEquals;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class DictAccumulatorTest {
+
+    @BeforeClass
+    public static void setUpClass() {
+        TodConfig.init(DictAccumulatorTest.class);
+    }
+
+    @Test
+    public void testToDict() {
+        assertEquals(Dict.of(), DictAccumulator.of()
+                                               .toDict());
+
+        Dict dict = DictAccumulator.of()
+                                   .add(Locale.ITALIAN, "b", "a")
+                                   .add(LocalizedString.of(Locale.ENGLISH, "c"))
+                                   .add(Dict.of(Locale.ITALIAN, "b"))
+                                   .add(Locale.FRENCH)
+                                   .toDict();
+        assertEquals(ImmutableList.of(Locale.ENGLISH, Locale.ITALIAN), dict.locales()
+                                                                         .asList());
+        assertEquals(ImmutableList.of("a", "b", "b"), dict.get(Locale.ITALIAN));
+        assertEquals(ImmutableList.of("c"), dict.get(Locale.ENGLISH));
+
+        DictAccumulator acc = DictAccumulator.of();
+        try {
+            acc.add(Locale.ITALIAN, "a", null);
+            Assert.fail("Shouldn't arrive here!");
+        } catch (NullPointerException ex) {
+
+        }
+        assertEquals(Dict.of(), acc.toDict());
+    }
+
+    @Test
+    public void testSorted() {
+        Dict dict = DictAccumulator.of()
+                                   .add(Locale.ITALIAN, "Trento")
+                                   .add(Locale.ITALIAN, "Trient", "Comune di Trento")
+                                   .toDict();
+        assertEquals("Comune di Trento", dict.str(Locale.ITALIAN));
+        assertEquals(ImmutableList.of("Comune di Trento", "Trento", "Trient"), dict.get(Locale.ITALIAN));
+        assertEquals(dict, DictAccumulator.of()
+                                          .add(Locale.ITALIAN, "Trient", "Comune di Trento")
+                                          .add(Locale.ITALIAN, "Trento")
+                                          .toDict());
+    }
+
+    @Test
+    public void testCombine() {
+        DictAccumulator acc1 = DictAccumulator.of()
+                                              .add(Locale.ITALIAN, "b");
+        DictAccumulator acc2 = DictAccumulator.of()
+                                              .add(Locale.ITALIAN, "a")
+                                              .add(Locale.ENGLISH, "c");
+        assertEquals(Dict.of(Locale.ENGLISH, "c")
+                         .with(Locale.ITALIAN, "a", "b"),
+                acc1.combine(acc2)
+                    .toDict());
+        assertEquals(Dict.of(Locale.ENGLISH, "c")
+                         .with(Locale.ITALIAN, "a"),
+                acc2.toDict());
+    }
+
+    @Test
+    public void testConcurrentAdd() throws InterruptedException {
+        final DictAccumulator acc = DictAccumulator.of();
+        final Locale[] locales = { Locale.ITALIAN, Locale.ENGLISH, Locale.GERMAN };
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            final int offset = t;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        acc.add(locales[(i + offset) % locales.length], "s" + (i % 10));
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Dict dict = acc.toDict();
+        assertEquals(ImmutableList.of(Locale.GERMAN, Locale.ENGLISH, Locale.ITALIAN), dict.locales()
+                                                                                        .asList());
+        int n = 0;
+        for (Locale locale : locales) {
+            ImmutableList<String> strings = dict.get(locale);
+            for (int i = 1; i < strings.size(); i++) {
+                Assert.assertTrue(strings.get(i - 1)
+                                         .compareTo(strings.get(i)) <= 0);
+            }
+            n += strings.size();
+        }
+        assertEquals(4000, n);
+    }
+}
@@ -0,0 +1,163 @@
+/* 
+ * Copyright 2015 Trento Rise  (trentorise.eu) 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons.test;
+
+import eu.trentorise.opendata.commons.Dict;
+import eu.trentorise.opendata.commons.DictColumn;
+import eu.trentorise.opendata.commons.DictEntryConsumer;
+import eu.trentorise.opendata.commons.DictStringPool;
+import eu.trentorise.opendata.commons.LocaleFallback;
+import eu.trentorise.opendata.commons.LocalizedString;
+import eu.trentorise.opendata.commons.TodConfig;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import org.junit.Assert;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class DictColumnTest {
+
+    @BeforeClass
+    public static void setUpClass() {
+        TodConfig.init(DictColumnTest.class);
+    }
+
+    private static final Dict DICT1 = Dict.of(Locale.ITALIAN, "a", "b")
+                                          .with(Locale.ENGLISH, "c");
+
+    private static final Dict DICT2 = Dict.of(Locale.ENGLISH, "", "d");
+
+    @Test
+    public void testAppend() {
+        DictColumn column = DictColumn.of(0, 0, 0);
+        List<Dict> dicts = new ArrayList<Dict>();
+        for (int i = 0; i < 100; i++) {
+            dicts.add(i % 3 == 0 ? DICT1 : (i % 3 == 1 ? DICT2 : Dict.of()));
+        }
+        column.appendAll(dicts)
+              .append(DICT2);
+        assertEquals(101, column.size());
+        for (int i = 0; i < dicts.size(); i++) {
+            assertEquals(dicts.get(i), column.get(i));
+        }
+        assertEquals(DICT2, column.get(100));
+
+        try {
+            column.get(101);
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IndexOutOfBoundsException ex) {
+
+        }
+    }
+
+    @Test
+    public void testAccessors() {
+        DictColumn column = DictColumn.of()
+                                      .append(DICT1)
+                                      .append(DICT2)
+                                      .append(Dict.of());
+        assertEquals("a", column.str(0, Locale.ITALIAN));
+        assertEquals("", column.str(1, Locale.ITALIAN));
+        assertEquals("", column.str(0, new Locale("xx")));
+        assertEquals(2, column.count(0, Locale.ITALIAN));
+        assertEquals(0, column.count(2, Locale.ITALIAN));
+        assertEquals("b", column.get(0, Locale.ITALIAN, 1));
+        assertEquals("d", column.get(1, Locale.ENGLISH, 1));
+
+        LocaleFallback fallback = LocaleFallback.of(Locale.ITALIAN, Locale.ENGLISH);
+        assertEquals(LocalizedString.of(Locale.ITALIAN, "a"), column.some(0, fallback));
+        assertEquals(LocalizedString.of(Locale.ENGLISH, "d"), column.some(1, fallback));
+        assertEquals(LocalizedString.of(), column.some(2, fallback));
+        // falls back to English like dicts
+        assertEquals(LocalizedString.of(Locale.ENGLISH, "c"), column.some(0, LocaleFallback.of(Locale.GERMAN)));
+        LocaleFallback german = LocaleFallback.of(Locale.GERMAN);
+        Dict dict = Dict.of(Locale.FRENCH, "", "f")
+                        .with(Locale.ITALIAN, "i");
+        assertEquals(dict.some(german), DictColumn.of()
+                                                  .append(dict)
+                                                  .some(0, german));
+
+        assertArrayEquals(new String[] { "c", "", "" }, column.strs(Locale.ENGLISH));
+        assertArrayEquals(new String[] { "", "", "" }, column.strs(Locale.GERMAN));
+
+        final List<LocalizedString> visited = new ArrayList<LocalizedString>();
+        column.forEach(0, new DictEntryConsumer() {
+            @Override
+            public void accept(Locale locale, int index, String string) {
+                visited.add(LocalizedString.of(locale, string));
+            }
+        });
+        assertEquals(DICT1.asLocalizedStrings(), visited);
+
+        try {
+            column.get(0, Locale.ITALIAN, 2);
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IndexOutOfBoundsException ex) {
+
+        }
+        try {
+            DictColumn.of(-1, 0, 0);
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IllegalArgumentException ex) {
+
+        }
+        Assert.assertTrue(column.memoryFootprint() > 0);
+        assertEquals(Arrays.asList(DICT1, DICT2, Dict.of()),
+                Arrays.asList(column.get(0), column.get(1), column.get(2)));
+    }
+
+    @Test
+    public void testPool() {
+        List<Dict> dicts = new ArrayList<Dict>();
+        dicts.add(DICT1);
+        dicts.add(DICT2);
+        dicts.add(Dict.of());
+        dicts.add(DICT1);
+        DictStringPool pool = DictStringPool.builder()
+                                            .add(dicts)
+                                            .build();
+        DictColumn column = DictColumn.of(pool)
+                                      .appendAll(dicts);
+        DictColumn plain = DictColumn.of()
+                                     .appendAll(dicts);
+        LocaleFallback fallback = LocaleFallback.of(Locale.ITALIAN);
+        for (int row = 0; row < dicts.size(); row++) {
+            assertEquals(dicts.get(row), column.get(row));
+            assertEquals(plain.str(row, Locale.ENGLISH), column.str(row, Locale.ENGLISH));
+            assertEquals(plain.some(row, fallback), column.some(row, fallback));
+        }
+        assertArrayEquals(plain.strs(Locale.ITALIAN), column.strs(Locale.ITALIAN));
+        assertEquals("b", column.get(3, Locale.ITALIAN, 1));
+        assertTrue(column.memoryFootprint() >= pool.memoryFootprint());
+
+        try {
+            column.append(Dict.of(Locale.ITALIAN, "a", "missing"));
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IllegalArgumentException ex) {
+
+        }
+        assertEquals(4, column.size());
+    }
+}
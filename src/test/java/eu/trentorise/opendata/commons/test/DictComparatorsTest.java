@@ -0,0 +1,123 @@
+/* 
+ * Copyright 2015 Trento Rise  (trentorise.eu) 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons.test;
+
+import eu.trentorise.opendata.commons.Dict;
+import eu.trentorise.opendata.commons.DictComparators;
+import eu.trentorise.opendata.commons.LocaleFallback;
+import eu.trentorise.opendata.commons.TodConfig;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Assert;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class DictComparatorsTest {
+
+    @BeforeClass
+    public static void setUpClass() {
+        TodConfig.init(DictComparatorsTest.class);
+    }
+
+    @Test
+    public void testComparator() {
+        Dict a = Dict.of(Locale.ITALIAN, "albero");
+        Dict e = Dict.of(Locale.ITALIAN, "èdera");
+        Dict z = Dict.of(Locale.ENGLISH, "zebra");
+        Dict empty = Dict.of();
+        List<Dict> dicts = new ArrayList<Dict>(Arrays.asList(z, e, empty, a));
+
+        Collections.sort(dicts, DictComparators.comparator(LocaleFallback.of(Locale.ITALIAN, Locale.ENGLISH)));
+        assertEquals(Arrays.asList(empty, a, e, z), dicts);
+    }
+
+    @Test
+    public void testComparatorEviction() {
+        Comparator<Dict> comparator = DictComparators.comparator(LocaleFallback.of(Locale.ITALIAN),
+                Collator.getInstance(Locale.ITALIAN), 1);
+        Dict a = Dict.of(Locale.ITALIAN, "a");
+        Dict b = Dict.of(Locale.ITALIAN, "b");
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(comparator.compare(a, b) < 0);
+            Assert.assertTrue(comparator.compare(b, a) > 0);
+            assertEquals(0, comparator.compare(a, Dict.of(Locale.ITALIAN, "a")));
+        }
+
+        try {
+            DictComparators.comparator(LocaleFallback.of(Locale.ITALIAN), Collator.getInstance(Locale.ITALIAN), 0);
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IllegalArgumentException ex) {
+
+        }
+    }
+
+    @Test
+    public void testSort() {
+        Dict b1 = Dict.of(Locale.ITALIAN, "b");
+        Dict b2 = Dict.of(Locale.ITALIAN, "b");
+        Dict upperA = Dict.of(Locale.ENGLISH, "A");
+        Dict c = Dict.of(Locale.ITALIAN, "ç");
+        List<Dict> dicts = new ArrayList<Dict>(Arrays.asList(b2, c, b1, upperA));
+
+        DictComparators.sort(dicts, LocaleFallback.of(Locale.ITALIAN, Locale.ENGLISH));
+        assertEquals(Arrays.asList(upperA, b2, b1, c), dicts);
+        // stable
+        assertSame(b2, dicts.get(1));
+        assertSame(b1, dicts.get(2));
+
+        List<Dict> empty = new ArrayList<Dict>();
+        DictComparators.sort(empty, LocaleFallback.of(Locale.ITALIAN));
+        assertEquals(0, empty.size());
+    }
+
+    @Test
+    public void testSortParallel() {
+        List<Dict> dicts = new ArrayList<Dict>();
+        for (int i = 0; i < 5000; i++) {
+            dicts.add(Dict.of(i % 3 == 0 ? Locale.ITALIAN : Locale.ENGLISH, "s" + (i * 7919 % 5000)));
+        }
+        LocaleFallback fallback = LocaleFallback.of(Locale.ITALIAN, Locale.ENGLISH);
+        Collator collator = Collator.getInstance(Locale.ITALIAN);
+
+        List<Dict> expected = new ArrayList<Dict>(dicts);
+        Collections.sort(expected, DictComparators.comparator(fallback, collator, 10));
+
+        List<Dict> sequential = new ArrayList<Dict>(dicts);
+        DictComparators.sort(sequential, fallback, collator, null);
+        assertEquals(expected, sequential);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<Dict> parallel = new ArrayList<Dict>(dicts);
+            DictComparators.sort(parallel, fallback, collator, pool);
+            assertEquals(expected, parallel);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/* 
+ * Copyright 2015 Trento Rise  (trentorise.eu) 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons.test;
+
+import com.google.common.collect.ImmutableList;
+import eu.trentorise.opendata.commons.Dict;
+import eu.trentorise.opendata.commons.DictIndex;
+import eu.trentorise.opendata.commons.TodConfig;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class DictIndexTest {
+
+    private static final List<Dict> DICTS = ImmutableList.of(
+            Dict.builder().put(Locale.ITALIAN, "Città di Trento").put(Locale.ENGLISH, "City of Trento").build(),
+            Dict.of(Locale.ITALIAN, "Comune di Rovereto", "Rovereto"),
+            Dict.of(Locale.GERMAN, "Stadt Bozen"),
+            Dict.of(new Locale("tr"), "ISPARTA"),
+            Dict.of(),
+            Dict.of(""),
+            Dict.of("TRENTINO"));
+
+    private static final List<String> QUERIES = ImmutableList.of(
+            "", "t", "tr", "tre", "TRENTO", "città", "di ", "ovr", "rovereto", "Bozen", "ısp", "isp", "ISP", "x",
+            "trentino");
+
+    @BeforeClass
+    public static void setUpClass() {
+        TodConfig.init(DictIndexTest.class);
+    }
+
+    private static DictIndex index() {
+        DictIndex index = DictIndex.of();
+        for (int i = 0; i < DICTS.size(); i++) {
+            index.put(i * 10, DICTS.get(i));
+        }
+        return index;
+    }
+
+    /**
+     * Searches by linear scan with {@link Dict#contains(String)}
+     */
+    private static int[] scan(String text) {
+        List<Integer> ret = new ArrayList<Integer>();
+        for (int i = 0; i < DICTS.size(); i++) {
+            if (DICTS.get(i).contains(text)) {
+                ret.add(i * 10);
+            }
+        }
+        int[] arr = new int[ret.size()];
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = ret.get(i);
+        }
+        return arr;
+    }
+
+    @Test
+    public void testSameAsContains() {
+        DictIndex index = index();
+        assertEquals(DICTS.size(), index.size());
+        for (String query : QUERIES) {
+            assertArrayEquals(scan(query), index.search(query));
+        }
+    }
+
+    @Test
+    public void testLocales() {
+        DictIndex index = index();
+        assertArrayEquals(new int[] { 0, 60 }, index.search("trent"));
+        assertArrayEquals(new int[] { 0 }, index.search("trent", Arrays.asList(Locale.ENGLISH)));
+        assertArrayEquals(new int[] { 0, 10 }, index.search("di", Arrays.asList(Locale.ITALIAN)));
+        assertArrayEquals(new int[] {}, index.search("trent", Arrays.asList(Locale.CHINESE)));
+        assertArrayEquals(new int[] {}, index.search("trent", new ArrayList<Locale>()));
+    }
+
+    @Test
+    public void testRemoveAndReplace() {
+        DictIndex index = index();
+        assertTrue(index.remove(0));
+        assertFalse(index.remove(0));
+        assertArrayEquals(new int[] { 60 }, index.search("trent"));
+
+        index.put(60, Dict.of("Rovereto"));
+        assertArrayEquals(new int[] {}, index.search("trent"));
+        assertArrayEquals(new int[] { 10, 60 }, index.search("rover"));
+        assertEquals(DICTS.size() - 1, index.size());
+    }
+
+    @Test
+    public void testUnorderedIds() {
+        DictIndex index = DictIndex.of();
+        index.put(5, Dict.of("abcd"));
+        index.put(1, Dict.of("abce"));
+        index.put(3, Dict.of("xabc"));
+        assertArrayEquals(new int[] { 1, 3, 5 }, index.search("abc"));
+        index.remove(3);
+        assertArrayEquals(new int[] { 1, 5 }, index.search("abc"));
+    }
+
+    @Test
+    public void testMemoryFootprint() {
+        DictIndex index = DictIndex.of();
+        assertEquals(0, index.memoryFootprint());
+        index.put(1, Dict.of("abcd"));
+        long footprint = index.memoryFootprint();
+        assertTrue(footprint > 0);
+        index.put(2, Dict.of("some longer string"));
+        assertTrue(index.memoryFootprint() > footprint);
+        index.remove(2);
+        assertEquals(footprint, index.memoryFootprint());
+    }
+}
@@ -0,0 +1,96 @@
+/* 
+ * Copyright 2015 Trento Rise  (trentorise.eu) 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons.test;
+
+import com.google.common.collect.ImmutableListMultimap;
+import eu.trentorise.opendata.commons.Dict;
+import eu.trentorise.opendata.commons.DictInterner;
+import eu.trentorise.opendata.commons.TodConfig;
+import java.util.Locale;
+import org.junit.Assert;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class DictInternerTest {
+
+    @BeforeClass
+    public static void setUpClass() {
+        TodConfig.init(DictInternerTest.class);
+    }
+
+    @Test
+    public void testHashCode() {
+        Dict dict = Dict.of(Locale.ITALIAN, "a")
+                        .with(Locale.ENGLISH, "b")
+                        .with(Locale.ITALIAN, "c");
+        Dict built = Dict.builder()
+                         .put(Locale.ENGLISH, "b")
+                         .put(Locale.ITALIAN, "a", "c")
+                         .build();
+        assertEquals(built, dict);
+        assertEquals(built.hashCode(), dict.hashCode());
+        assertEquals(7 * 53 + ImmutableListMultimap.of(Locale.ITALIAN, "a", Locale.ITALIAN, "c", Locale.ENGLISH, "b")
+                                                   .hashCode(),
+                dict.hashCode());
+    }
+
+    @Test
+    public void testIntern() {
+        for (DictInterner interner : new DictInterner[] { DictInterner.weak(), DictInterner.bounded(10) }) {
+            Dict dict1 = Dict.of(Locale.ITALIAN, "Dati");
+            Dict dict2 = Dict.of(Locale.ITALIAN, "Dati");
+            assertNotSame(dict1, dict2);
+            assertSame(dict1, interner.intern(dict1));
+            assertSame(dict1, interner.intern(dict2));
+            assertSame(dict1, interner.intern(dict1));
+            Dict other = Dict.of(Locale.ENGLISH, "Dati");
+            assertSame(other, interner.intern(other));
+            assertSame(Dict.of(), interner.intern(Dict.builder()
+                                                      .build()));
+
+            assertEquals(5, interner.requestCount());
+            assertEquals(1, interner.hitCount());
+            assertEquals(0.2, interner.hitRate(), 0.0001);
+        }
+        assertEquals(0.0, DictInterner.weak()
+                                      .hitRate(),
+                0.0);
+    }
+
+    @Test
+    public void testBounded() {
+        DictInterner interner = DictInterner.bounded(1);
+        for (int i = 0; i < 100; i++) {
+            interner.intern(Dict.of("" + i));
+        }
+        Dict dict = Dict.of("0");
+        assertSame(dict, interner.intern(dict));
+
+        try {
+            DictInterner.bounded(0);
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IllegalArgumentException ex) {
+
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/* 
+ * Copyright 2015 Trento Rise  (trentorise.eu) 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons.test;
+
+import eu.trentorise.opendata.commons.Dict;
+import eu.trentorise.opendata.commons.DictJson;
+import eu.trentorise.opendata.commons.DictJsonReader;
+import eu.trentorise.opendata.commons.LocalizedString;
+import eu.trentorise.opendata.commons.TodConfig;
+import eu.trentorise.opendata.commons.exceptions.TodParseException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Locale;
+import org.junit.Assert;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class DictJsonTest {
+
+    @BeforeClass
+    public static void setUpClass() {
+        TodConfig.init(DictJsonTest.class);
+    }
+
+    private static Dict readDict(String json) throws IOException {
+        return DictJson.readDict(new StringReader(json));
+    }
+
+    @Test
+    public void testWrite() {
+        assertEquals("{}", DictJson.toJson(Dict.of()));
+        assertEquals("{\"it\":[\"ciao\"],\"en\":[\"hello\",\"hi\"]}", DictJson.toJson(Dict.builder()
+                                                                                          .put(Locale.ITALIAN, "ciao")
+                                                                                          .put(Locale.ENGLISH, "hello", "hi")
+                                                                                          .build()));
+        assertEquals("{\"\":[\"a\"]}", DictJson.toJson(Dict.of("a")));
+        assertEquals("{\"locale\":\"it\",\"string\":\"ciao\"}",
+                DictJson.toJson(LocalizedString.of(Locale.ITALIAN, "ciao")));
+        assertEquals("{\"en\":[\"a\\\"b\\\\c\\n\\u0001\\u2028\"]}",
+                DictJson.toJson(Dict.of(Locale.ENGLISH, "a\"b\\c\n\u0001 ")));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Dict dict = Dict.builder()
+                        .put(Locale.ITALIAN, "ciao", "")
+                        .put(Locale.ROOT, "x")
+                        .put(Locale.forLanguageTag("zh-Hant-TW"), "中文 \"\t😀")
+                        .build();
+        assertEquals(dict, readDict(DictJson.toJson(dict)));
+        assertEquals(Dict.of(), readDict(DictJson.toJson(Dict.of())));
+
+        LocalizedString ls = LocalizedString.of(Locale.ENGLISH, "a\\b\r\n");
+        assertEquals(ls, DictJson.readLocalizedString(new StringReader(DictJson.toJson(ls))));
+    }
+
+    @Test
+    public void testIllFormedLocale() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        try {
+            DictJson.write(Dict.of(Locale.ITALIAN, "a")
+                               .with(new Locale("it_IT"), "x"),
+                    sb);
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IllegalArgumentException ex) {
+
+        }
+        assertEquals("", sb.toString());
+
+        try {
+            DictJson.toJson(LocalizedString.of(new Locale("it_IT"), "x"));
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IllegalArgumentException ex) {
+
+        }
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        assertEquals(Dict.of(Locale.ITALIAN, "a/bè"),
+                readDict(" {\n \"it\" : [ \"a\\/b\\u00E8\" ] } "));
+        assertEquals(Dict.of(Locale.ITALIAN, "ciao"), readDict("{\"it\":\"ciao\"}"));
+        assertEquals(Dict.of(Locale.ITALIAN, "a", "b"), readDict("{\"it\":[\"a\"],\"it\":[\"b\"]}"));
+        assertEquals(Dict.of(), readDict("{\"it\":[]}"));
+        assertEquals(LocalizedString.of(Locale.ITALIAN, "ciao"), DictJson.readLocalizedString(new StringReader(
+                "{\"string\":\"ciao\", \"x\":{\"y\":[1, true, null]}, \"locale\":\"it\"}")));
+    }
+
+    @Test
+    public void testStream() throws IOException {
+        DictJsonReader reader = DictJsonReader.of(new StringReader("[{\"it\":[\"a\"]}, {}, {\"en\":[\"b\"]}]"));
+        reader.beginArray();
+        assertTrue(reader.hasNext());
+        assertEquals(Dict.of(Locale.ITALIAN, "a"), reader.nextDict());
+        assertTrue(reader.hasNext());
+        assertEquals(Dict.of(), reader.nextDict());
+        // works also without hasNext
+        assertEquals(Dict.of(Locale.ENGLISH, "b"), reader.nextDict());
+        assertFalse(reader.hasNext());
+        reader.endArray();
+        assertFalse(reader.hasNext());
+
+        reader = DictJsonReader.of(new StringReader("{\"it\":[\"a\"]}\n{\"en\":[\"b\"]}\n"));
+        assertEquals(Dict.of(Locale.ITALIAN, "a"), reader.nextDict());
+        assertEquals(Dict.of(Locale.ENGLISH, "b"), reader.nextDict());
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    public void testLongStream() throws IOException {
+        // strings crossing buffer boundaries
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++) {
+            if (i > 0) {
+                sb.append(",");
+            }
+            sb.append(DictJson.toJson(Dict.of(Locale.ITALIAN, "stringa \"numero\" " + i)));
+        }
+        sb.append("]");
+        DictJsonReader reader = DictJsonReader.of(new StringReader(sb.toString()));
+        reader.beginArray();
+        int i = 0;
+        while (reader.hasNext()) {
+            assertEquals(Dict.of(Locale.ITALIAN, "stringa \"numero\" " + i), reader.nextDict());
+            i++;
+        }
+        reader.endArray();
+        assertEquals(1000, i);
+    }
+
+    @Test
+    public void testMalformed() throws IOException {
+        String[] jsons = { "", "{", "{\"it\":[\"a\"]", "{\"it\":null}", "{\"it\":[\"a\" \"b\"]}", "{it:[\"a\"]}",
+                "{\"it\":[\"a\\x\"]}", "{\"it\":[\"a\nb\"]}", "[\"a\"]" };
+        for (String json : jsons) {
+            try {
+                readDict(json);
+                Assert.fail("Shouldn't arrive here with " + json);
+            } catch (TodParseException ex) {
+
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/* 
+ * Copyright 2015 Trento Rise  (trentorise.eu) 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons.test;
+
+import com.google.common.collect.ImmutableMap;
+import eu.trentorise.opendata.commons.Dict;
+import eu.trentorise.opendata.commons.DictLocaleIndex;
+import eu.trentorise.opendata.commons.TodConfig;
+import java.util.BitSet;
+import java.util.Locale;
+import java.util.Random;
+import org.junit.Assert;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class DictLocaleIndexTest {
+
+    @BeforeClass
+    public static void setUpClass() {
+        TodConfig.init(DictLocaleIndexTest.class);
+    }
+
+    private static BitSet bits(int... ids) {
+        BitSet ret = new BitSet();
+        for (int id : ids) {
+            ret.set(id);
+        }
+        return ret;
+    }
+
+    @Test
+    public void testQueries() {
+        DictLocaleIndex index = DictLocaleIndex.of();
+        index.put(1, Dict.of(Locale.ITALIAN, "a")
+                         .with(Locale.GERMAN, "b"));
+        index.put(2, Dict.of(Locale.ITALIAN, "a")
+                         .with(Locale.GERMAN, "b")
+                         .with(Locale.ENGLISH, "c"));
+        index.put(3, Dict.of(Locale.ENGLISH, "c")
+                         .with(Locale.GERMAN, ""));
+        index.put(100, Dict.of());
+        assertEquals(4, index.size());
+        assertEquals(bits(1, 2, 3, 100), index.ids());
+
+        BitSet ids = index.withAll(Locale.ITALIAN, Locale.GERMAN);
+        assertEquals(bits(1, 2), ids);
+        ids.and(index.withNone(Locale.ENGLISH));
+        assertEquals(bits(1), ids);
+
+        assertEquals(bits(1, 2, 3), index.withAny(Locale.ITALIAN, Locale.ENGLISH));
+        assertEquals(bits(100), index.withNone(Locale.ITALIAN, Locale.ENGLISH));
+        assertEquals(bits(1, 2, 3, 100), index.withAll());
+        assertEquals(bits(), index.withAll(Locale.ITALIAN, Locale.CHINESE));
+        assertEquals(bits(), index.withAny(new Locale("xx")));
+
+        // results are copies
+        index.withAll()
+             .clear();
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void testStats() {
+        DictLocaleIndex index = DictLocaleIndex.of();
+        assertEquals(0.0, index.coverage(Locale.ITALIAN), 0.0);
+        index.put(1, Dict.of(Locale.ITALIAN, "a"));
+        index.put(2, Dict.of(Locale.ITALIAN, "a")
+                         .with(Locale.ENGLISH, "b"));
+        assertEquals(2, index.count(Locale.ITALIAN));
+        assertEquals(0, index.count(Locale.GERMAN));
+        assertEquals(0.5, index.coverage(Locale.ENGLISH), 0.0);
+        assertEquals(ImmutableMap.of(Locale.ITALIAN, 2, Locale.ENGLISH, 1), index.counts());
+        assertTrue(index.memoryFootprint() > 0);
+    }
+
+    @Test
+    public void testUpdates() {
+        DictLocaleIndex index = DictLocaleIndex.of();
+        index.put(1, Dict.of(Locale.ITALIAN, "a"));
+        index.put(1, Dict.of(Locale.ENGLISH, "a"));
+        assertEquals(1, index.size());
+        assertEquals(bits(), index.withAny(Locale.ITALIAN));
+        assertEquals(bits(1), index.withAny(Locale.ENGLISH));
+
+        assertTrue(index.remove(1));
+        assertFalse(index.remove(1));
+        assertEquals(0, index.size());
+        assertEquals(bits(), index.withAny(Locale.ENGLISH));
+
+        try {
+            index.put(-1, Dict.of());
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IllegalArgumentException ex) {
+
+        }
+    }
+
+    @Test
+    public void testSparseIds() {
+        DictLocaleIndex index = DictLocaleIndex.of();
+        index.put(3, Dict.of(Locale.ITALIAN, "a"));
+        index.put(Integer.MAX_VALUE, Dict.of(Locale.ITALIAN, "a")
+                                         .with(Locale.ENGLISH, "b"));
+        assertEquals(2, index.count(Locale.ITALIAN));
+        assertEquals(1, index.count(Locale.ENGLISH));
+        // a plain bitmap would take 256 MB per locale
+        assertTrue(index.memoryFootprint() < 1000);
+        assertTrue(index.remove(Integer.MAX_VALUE));
+        assertEquals(bits(3), index.withAll(Locale.ITALIAN));
+    }
+
+    @Test
+    public void testDenseIds() {
+        DictLocaleIndex index = DictLocaleIndex.of();
+        for (int id = 0; id < 1000000; id++) {
+            index.put(id, Dict.of(Locale.ITALIAN, "a"));
+        }
+        // consecutive ids are kept as runs
+        assertTrue(index.memoryFootprint() < 10000);
+        assertEquals(1000000, index.withAll(Locale.ITALIAN)
+                                   .cardinality());
+    }
+
+    @Test
+    public void testRandomIds() {
+        Random random = new Random(42);
+        Locale[] locales = { Locale.ITALIAN, Locale.ENGLISH, Locale.GERMAN };
+        DictLocaleIndex index = DictLocaleIndex.of();
+        BitSet all = new BitSet();
+        BitSet[] byLocale = { new BitSet(), new BitSet(), new BitSet() };
+        for (int i = 0; i < 100000; i++) {
+            int id;
+            switch (i % 3) {
+            case 0:
+                // runs
+                id = i / 3;
+                break;
+            case 1:
+                // dense
+                id = 200000 + random.nextInt(70000);
+                break;
+            default:
+                // sparse
+                id = random.nextInt(10000000);
+            }
+            if (random.nextInt(5) == 0) {
+                assertEquals(all.get(id), index.remove(id));
+                all.clear(id);
+                for (BitSet model : byLocale) {
+                    model.clear(id);
+                }
+            } else {
+                Dict dict = Dict.of();
+                for (int l = 0; l < locales.length; l++) {
+                    if (random.nextBoolean()) {
+                        dict = dict.with(locales[l], "a");
+                        byLocale[l].set(id);
+                    } else {
+                        byLocale[l].clear(id);
+                    }
+                }
+                index.put(id, dict);
+                all.set(id);
+            }
+        }
+        // splits runs and empties bitmaps
+        for (int id = 0; id < 270000; id += 1 + random.nextInt(7)) {
+            assertEquals(all.get(id), index.remove(id));
+            all.clear(id);
+            for (BitSet model : byLocale) {
+                model.clear(id);
+            }
+        }
+        assertEquals(all, index.ids());
+        for (int l = 0; l < locales.length; l++) {
+            assertEquals(byLocale[l], index.withAny(locales[l]));
+            assertEquals(byLocale[l].cardinality(), index.count(locales[l]));
+        }
+        BitSet expected = (BitSet) byLocale[0].clone();
+        expected.and(byLocale[1]);
+        assertEquals(expected, index.withAll(Locale.ITALIAN, Locale.ENGLISH));
+        expected = (BitSet) byLocale[1].clone();
+        expected.or(byLocale[2]);
+        assertEquals(expected, index.withAny(Locale.ENGLISH, Locale.GERMAN));
+        expected = (BitSet) all.clone();
+        expected.andNot(byLocale[0]);
+        expected.andNot(byLocale[2]);
+        assertEquals(expected, index.withNone(Locale.ITALIAN, Locale.GERMAN));
+    }
+}
@@ -0,0 +1,98 @@
+/* 
+ * Copyright 2015 Trento Rise  (trentorise.eu) 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons.test;
+
+import eu.trentorise.opendata.commons.Dict;
+import eu.trentorise.opendata.commons.DictMatcher;
+import eu.trentorise.opendata.commons.TodConfig;
+import java.util.Locale;
+import org.junit.Assert;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class DictMatcherTest {
+
+    @BeforeClass
+    public static void setUpClass() {
+        TodConfig.init(DictMatcherTest.class);
+    }
+
+    @Test
+    public void testIndexIn() {
+        DictMatcher matcher = DictMatcher.of("citta");
+        assertEquals(0, matcher.indexIn("Città di Trento"));
+        assertEquals(3, matcher.indexIn("La CITTÀ"));
+        assertEquals(-1, matcher.indexIn("Citt"));
+        assertEquals(-1, matcher.indexIn(""));
+        assertEquals(5, DictMatcher.of("aabab").indexIn("ababaaabab"));
+        assertEquals(0, DictMatcher.of("abab").indexIn("ababaaabab"));
+        assertEquals(0, DictMatcher.of("").indexIn("a"));
+        assertEquals(0, DictMatcher.of("").indexIn(""));
+    }
+
+    @Test
+    public void testFolding() {
+        assertTrue(DictMatcher.of("CITTÀ").matches("citta"));
+        // decomposed query
+        assertTrue(DictMatcher.of("città").matches("Città"));
+        assertTrue(DictMatcher.of("ecole").matches("École"));
+        assertTrue(DictMatcher.of("strasse").matches("STRASSE"));
+        assertTrue(DictMatcher.of("oresund").matches("Øresund"));
+        assertTrue(DictMatcher.of("lodz").matches("Łódź"));
+        assertTrue(DictMatcher.of("istanbul").matches("İstanbul"));
+        assertTrue(DictMatcher.of("ISTANBUL").matches("ıstanbul"));
+        assertTrue(DictMatcher.of("αθηνα").matches("Αθήνα"));
+        assertTrue(DictMatcher.of("москва").matches("МОСКВА"));
+        assertFalse(DictMatcher.of("citta").matches("cita"));
+    }
+
+    @Test
+    public void testCjk() {
+        assertTrue(DictMatcher.of("한국")
+                              .matches(Dict.of(Locale.KOREAN, "한국 데이터")));
+        assertTrue(DictMatcher.of("データ").matches("オープンデータ"));
+        // decomposed kana
+        assertTrue(DictMatcher.of("テ\u3099ータ").matches("オープンデータ"));
+        assertFalse(DictMatcher.of("データ").matches("オープンテータ"));
+        assertTrue(DictMatcher.of("数据").matches("开放数据"));
+    }
+
+    @Test
+    public void testMatchesDict() {
+        DictMatcher matcher = DictMatcher.of("citta");
+        assertTrue(matcher.matches(Dict.of(Locale.ENGLISH, "city")
+                                       .with(Locale.ITALIAN, "Paese", "Città di Trento")));
+        assertFalse(matcher.matches(Dict.of(Locale.ENGLISH, "city")));
+        assertFalse(matcher.matches(Dict.of()));
+        assertTrue(DictMatcher.of("")
+                              .matches(Dict.of(Locale.ENGLISH, "")));
+        assertEquals("citta", matcher.query());
+
+        try {
+            matcher.matches((Dict) null);
+            Assert.fail("Shouldn't arrive here!");
+        } catch (NullPointerException ex) {
+
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/* 
+ * Copyright 2015 Trento Rise  (trentorise.eu) 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons.test;
+
+import com.google.common.collect.ImmutableList;
+import eu.trentorise.opendata.commons.Dict;
+import eu.trentorise.opendata.commons.DictPatch;
+import eu.trentorise.opendata.commons.LocaleRegistry;
+import eu.trentorise.opendata.commons.TodConfig;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+import java.util.Locale;
+import org.junit.Assert;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class DictPatchTest {
+
+    private static final List<Dict> DICTS = ImmutableList.of(
+            Dict.of(),
+            Dict.of(Locale.ITALIAN, "a"),
+            Dict.of(Locale.ITALIAN, "b"),
+            Dict.of(Locale.ITALIAN, "a", "b", "c"),
+            Dict.of(Locale.ITALIAN, "a", "x", "c"),
+            Dict.of(Locale.ITALIAN, "a", "c"),
+            Dict.of(Locale.ITALIAN, "c", "a"),
+            Dict.builder()
+                .put(Locale.ITALIAN, "a")
+                .put(Locale.ENGLISH, "b")
+                .build(),
+            Dict.builder()
+                .put(Locale.ENGLISH, "b")
+                .put(Locale.FRENCH, "d", "")
+                .build());
+
+    @BeforeClass
+    public static void setUpClass() {
+        TodConfig.init(DictPatchTest.class);
+    }
+
+    @Test
+    public void testDiffApply() {
+        for (Dict from : DICTS) {
+            for (Dict to : DICTS) {
+                DictPatch patch = from.diff(to);
+                assertEquals(from.equals(to), patch.isEmpty());
+                assertEquals(to, from.apply(patch));
+            }
+        }
+    }
+
+    @Test
+    public void testEdits() {
+        DictPatch patch = Dict.of(Locale.ITALIAN, "a", "b", "c")
+                              .diff(Dict.of(Locale.ITALIAN, "a", "x", "y", "c"));
+        assertEquals(ImmutableList.of(DictPatch.Edit.of(Locale.ITALIAN, 1, ImmutableList.of("b"),
+                ImmutableList.of("x", "y"))), patch.edits());
+
+        Dict dict = Dict.builder()
+                        .put(Locale.ITALIAN, "a")
+                        .put(Locale.ENGLISH, "b")
+                        .build();
+        Dict patched = dict.apply(dict.diff(dict.with(Locale.FRENCH, "c")));
+        assertTrue(dict.get(Locale.ITALIAN) == patched.get(Locale.ITALIAN));
+        assertEquals(ImmutableList.of(Locale.ITALIAN, Locale.ENGLISH, Locale.FRENCH), patched.locales()
+                                                                                              .asList());
+
+        DictPatch.Edit edit = DictPatch.Edit.of(new Locale("it"), 0, ImmutableList.of("a"),
+                ImmutableList.<String> of());
+        assertTrue(Locale.ITALIAN == edit.locale());
+        int size = LocaleRegistry.size();
+        Locale unknown = new Locale("xx", "PATCH");
+        edit = DictPatch.Edit.of(unknown, 0, ImmutableList.<String> of(), ImmutableList.of("a"));
+        assertTrue(unknown == edit.locale());
+        assertEquals(size, LocaleRegistry.size());
+    }
+
+    @Test
+    public void testWrongBase() {
+        DictPatch patch = Dict.of(Locale.ITALIAN, "a", "b")
+                              .diff(Dict.of(Locale.ITALIAN, "a", "c"));
+        try {
+            Dict.of(Locale.ITALIAN, "a", "x")
+                .apply(patch);
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IllegalArgumentException ex) {
+
+        }
+        try {
+            Dict.of(Locale.ITALIAN, "a")
+                .apply(patch);
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IllegalArgumentException ex) {
+
+        }
+        try {
+            DictPatch.of(ImmutableList.of(DictPatch.Edit.of(Locale.ITALIAN, 0, ImmutableList.of("a"),
+                    ImmutableList.<String> of()), DictPatch.Edit.of(Locale.ITALIAN, 1, ImmutableList.of("b"),
+                            ImmutableList.<String> of())));
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IllegalArgumentException ex) {
+
+        }
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        DictPatch patch = DICTS.get(7)
+                               .diff(DICTS.get(8));
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bos);
+        oos.writeObject(patch);
+        oos.close();
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()));
+        DictPatch read = (DictPatch) ois.readObject();
+        assertEquals(patch, read);
+        assertEquals(DICTS.get(8), DICTS.get(7)
+                                        .apply(read));
+    }
+}
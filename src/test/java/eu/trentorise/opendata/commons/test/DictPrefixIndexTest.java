@@ -0,0 +1,128 @@
+/* 
+ * Copyright 2015 Trento Rise  (trentorise.eu) 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons.test;
+
+import eu.trentorise.opendata.commons.Dict;
+import eu.trentorise.opendata.commons.DictPrefixIndex;
+import eu.trentorise.opendata.commons.LocaleFallback;
+import eu.trentorise.opendata.commons.TodConfig;
+import java.util.Locale;
+import org.junit.Assert;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class DictPrefixIndexTest {
+
+    @BeforeClass
+    public static void setUpClass() {
+        TodConfig.init(DictPrefixIndexTest.class);
+    }
+
+    @Test
+    public void testComplete() {
+        DictPrefixIndex index = DictPrefixIndex.builder()
+                                               .put(1, Dict.of(Locale.ITALIAN, "Città di Trento"))
+                                               .put(2, Dict.of(Locale.ITALIAN, "Cittadella"))
+                                               .put(3, Dict.of(Locale.ITALIAN, "Comune di Trento")
+                                                           .with(Locale.ENGLISH, "Municipality of Trento"))
+                                               .put(4, Dict.of(Locale.ENGLISH, "City of Trento"))
+                                               .build();
+        assertEquals(4, index.size());
+        assertArrayEquals(new int[] { 1, 2 }, index.complete("citta", Locale.ITALIAN, 10));
+        assertArrayEquals(new int[] { 1, 2 }, index.complete("CITTÀ", Locale.ITALIAN, 10));
+        assertArrayEquals(new int[] { 1 }, index.complete("citta", Locale.ITALIAN, 1));
+        assertArrayEquals(new int[] { 1, 2, 3 }, index.complete("", Locale.ITALIAN, 10));
+        assertArrayEquals(new int[] {}, index.complete("trento", Locale.ITALIAN, 10));
+        assertArrayEquals(new int[] {}, index.complete("citta", Locale.ITALIAN, 0));
+        assertArrayEquals(new int[] { 4 }, index.complete("cit", Locale.ENGLISH, 10));
+        assertArrayEquals(new int[] {}, index.complete("cit", Locale.GERMAN, 10));
+        assertArrayEquals(new int[] {}, index.complete("cit", new Locale("xx"), 10));
+
+        try {
+            index.complete("citta", Locale.ITALIAN, -1);
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IllegalArgumentException ex) {
+
+        }
+    }
+
+    @Test
+    public void testCompleteFallback() {
+        DictPrefixIndex index = DictPrefixIndex.builder()
+                                               .put(1, Dict.of(Locale.ITALIAN, "Comune")
+                                                           .with(Locale.ENGLISH, "Municipality"))
+                                               .put(2, Dict.of(Locale.ENGLISH, "Museum"))
+                                               .put(3, Dict.of(Locale.ITALIAN, "Museo"))
+                                               .put(4, Dict.of(Locale.ITALIAN, "")
+                                                           .with(Locale.ENGLISH, "Mus"))
+                                               .build();
+        LocaleFallback fallback = LocaleFallback.of(Locale.ITALIAN, Locale.ENGLISH);
+        // 1 shows "Comune", 4 shows "Mus"
+        assertArrayEquals(new int[] { 3, 4, 2 }, index.complete("mu", fallback, 10));
+        assertArrayEquals(new int[] { 1 }, index.complete("co", fallback, 10));
+        assertArrayEquals(new int[] { 3, 4 }, index.complete("mu", fallback, 2));
+    }
+
+    @Test
+    public void testCompleteFallbackDefault() {
+        DictPrefixIndex index = DictPrefixIndex.builder()
+                                               .put(1, Dict.of(Locale.ENGLISH, "Museum"))
+                                               .put(2, Dict.of(Locale.GERMAN, "Museum"))
+                                               .put(3, Dict.of(Locale.GERMAN, "Mundart")
+                                                           .with(Locale.ENGLISH, "Dialect"))
+                                               .put(4, Dict.of(Locale.ITALIAN, "Museo")
+                                                           .with(Locale.ENGLISH, "Museum"))
+                                               .build();
+        LocaleFallback fallback = LocaleFallback.of(Locale.ITALIAN);
+        // like some, falls back to English and then to any locale
+        assertArrayEquals(new int[] { 4, 1, 2 }, index.complete("mu", fallback, 10));
+        assertArrayEquals(new int[] { 3 }, index.complete("dia", fallback, 10));
+        assertArrayEquals(new int[] {}, index.complete("mund", fallback, 10));
+    }
+
+    @Test
+    public void testWeights() {
+        DictPrefixIndex index = DictPrefixIndex.builder()
+                                               .put(1, Dict.of(Locale.ITALIAN, "Trento", "Trentino"), 1)
+                                               .put(2, Dict.of(Locale.ITALIAN, "Trenta"))
+                                               .put(3, Dict.of(Locale.ITALIAN, "Trentatre"), 5)
+                                               .put(2, Dict.of(Locale.ITALIAN, "Trentadue"), 3)
+                                               .build();
+        assertEquals(3, index.size());
+        assertArrayEquals(new int[] { 3, 2, 1 }, index.complete("trent", Locale.ITALIAN, 10));
+        assertArrayEquals(new int[] { 3, 2 }, index.complete("trenta", Locale.ITALIAN, 10));
+    }
+
+    @Test
+    public void testLongPrefix() {
+        String prefix = "Provincia autonoma di Trento - Servizio ";
+        assertTrue(prefix.length() > DictPrefixIndex.MAX_KEY_LENGTH);
+        DictPrefixIndex index = DictPrefixIndex.builder()
+                                               .put(1, Dict.of(Locale.ITALIAN, prefix + "Statistica"))
+                                               .put(2, Dict.of(Locale.ITALIAN, prefix + "Foreste"))
+                                               .build();
+        assertArrayEquals(new int[] { 1, 2 }, index.complete(prefix, Locale.ITALIAN, 10));
+        assertArrayEquals(new int[] { 1 }, index.complete(prefix + "stat", Locale.ITALIAN, 10));
+        Assert.assertTrue(index.memoryFootprint() > 0);
+    }
+}
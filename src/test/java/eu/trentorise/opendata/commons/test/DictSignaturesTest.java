@@ -0,0 +1,105 @@
+/* 
+ * Copyright 2015 Trento Rise  (trentorise.eu) 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons.test;
+
+import eu.trentorise.opendata.commons.Dict;
+import eu.trentorise.opendata.commons.DictSignatures;
+import eu.trentorise.opendata.commons.TodConfig;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import org.junit.Assert;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class DictSignaturesTest {
+
+    @BeforeClass
+    public static void setUpClass() {
+        TodConfig.init(DictSignaturesTest.class);
+    }
+
+    @Test
+    public void testSearch() {
+        List<Dict> dicts = Arrays.asList(Dict.of(Locale.ITALIAN, "Comune di Trento"),
+                Dict.of(Locale.ENGLISH, "Municipality of TRENTO"), Dict.of(new Locale("tr"), "İSTANBUL"),
+                Dict.of(), Dict.of(Locale.ITALIAN, "Città"));
+        DictSignatures signatures = DictSignatures.of(dicts);
+        assertEquals(5, signatures.size());
+        assertEquals(DictSignatures.DEFAULT_BITS, signatures.bits());
+        assertEquals(dicts.get(2), signatures.get(2));
+
+        assertArrayEquals(new int[] { 0, 1 }, signatures.search("trento"));
+        assertArrayEquals(new int[] { 2 }, signatures.search("istanbul"));
+        assertArrayEquals(new int[] { 2 }, signatures.search("İstanbul"));
+        assertArrayEquals(new int[] { 4 }, signatures.search("CITTÀ"));
+        assertArrayEquals(new int[] {}, signatures.search("bolzano"));
+        assertArrayEquals(new int[] { 0, 1, 2, 4 }, signatures.search(""));
+
+        assertFalse(signatures.mayContain(0, "bolzano"));
+        assertTrue(signatures.mayContain(0, "trento"));
+        assertTrue(signatures.mayContain(3, "t"));
+
+        try {
+            DictSignatures.of(dicts, 100);
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IllegalArgumentException ex) {
+
+        }
+    }
+
+    @Test
+    public void testNoFalseNegatives() {
+        Random random = new Random(0);
+        String chars = "aàbcdeèéiıİIlmnoòrstuùAÀEÈ ";
+        Locale[] locales = { Locale.ITALIAN, Locale.ENGLISH, new Locale("tr"), new Locale("lt") };
+        List<Dict> dicts = new ArrayList<Dict>();
+        for (int i = 0; i < 300; i++) {
+            dicts.add(Dict.of(locales[random.nextInt(locales.length)], randomString(random, chars, 20)));
+        }
+        for (int bits : new int[] { 64, 256 }) {
+            DictSignatures signatures = DictSignatures.of(dicts, bits);
+            for (int q = 0; q < 300; q++) {
+                String text = randomString(random, chars, 1 + random.nextInt(3));
+                for (int i = 0; i < dicts.size(); i++) {
+                    if (dicts.get(i)
+                             .contains(text)) {
+                        assertTrue(signatures.mayContain(i, text));
+                    }
+                }
+                assertTrue(signatures.candidateCount(text) >= signatures.search(text).length);
+            }
+        }
+    }
+
+    private static String randomString(Random random, String chars, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(chars.charAt(random.nextInt(chars.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,165 @@
+/* 
+ * Copyright 2015 Trento Rise  (trentorise.eu) 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons.test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import eu.trentorise.opendata.commons.Dict;
+import eu.trentorise.opendata.commons.DictStore;
+import eu.trentorise.opendata.commons.LocaleFallback;
+import eu.trentorise.opendata.commons.LocalizedString;
+import eu.trentorise.opendata.commons.TodConfig;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Locale;
+import org.junit.Assert;
+import static org.junit.Assert.assertEquals;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class DictStoreTest {
+
+    private static final List<Dict> DICTS = ImmutableList.of(
+            Dict.builder()
+                .put(Locale.ITALIAN, "", "ciao")
+                .put(Locale.ENGLISH, "hello", "hi")
+                .build(),
+            Dict.of(),
+            Dict.of(Locale.ROOT, "x"),
+            Dict.builder()
+                .put(Locale.GERMAN, "")
+                .put(Locale.forLanguageTag("zh-Hant-TW"), "中文 😀")
+                .build());
+
+    @BeforeClass
+    public static void setUpClass() {
+        TodConfig.init(DictStoreTest.class);
+    }
+
+    private static File tempFile() throws IOException {
+        File ret = File.createTempFile("dict-store-test", ".bin");
+        ret.deleteOnExit();
+        return ret;
+    }
+
+    private static DictStore store() throws IOException {
+        File file = tempFile();
+        assertEquals(DICTS.size(), DictStore.write(DICTS, file));
+        return DictStore.open(file);
+    }
+
+    @Test
+    public void testGet() throws IOException {
+        DictStore store = store();
+        assertEquals(DICTS.size(), store.size());
+        for (int i = 0; i < DICTS.size(); i++) {
+            assertEquals(DICTS.get(i), store.get(i));
+            for (Locale locale : ImmutableList.of(Locale.ITALIAN, Locale.ENGLISH, Locale.ROOT,
+                    Locale.forLanguageTag("zh-Hant-TW"), Locale.FRENCH)) {
+                assertEquals(DICTS.get(i).get(locale), store.get(i, locale));
+                assertEquals(DICTS.get(i).str(locale), store.str(i, locale));
+            }
+            assertEquals(DICTS.get(i).locales(), store.locales(i));
+        }
+        assertEquals(ImmutableSet.of(Locale.ITALIAN, Locale.ENGLISH), store.locales(0));
+
+        try {
+            store.get(DICTS.size());
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IndexOutOfBoundsException ex) {
+
+        }
+    }
+
+    @Test
+    public void testSome() throws IOException {
+        DictStore store = store();
+        for (LocaleFallback fallback : ImmutableList.of(LocaleFallback.of(), LocaleFallback.of(Locale.ITALIAN),
+                LocaleFallback.of(Locale.GERMAN), LocaleFallback.of(Locale.forLanguageTag("zh-Hant")))) {
+            for (int i = 0; i < DICTS.size(); i++) {
+                assertEquals(DICTS.get(i).some(fallback), store.some(i, fallback));
+            }
+        }
+        assertEquals(LocalizedString.of(Locale.ITALIAN, "ciao"), store.some(0, LocaleFallback.of(Locale.ITALIAN)));
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        File file = tempFile();
+        assertEquals(0, DictStore.write(ImmutableList.<Dict> of(), file));
+        assertEquals(0, DictStore.open(file).size());
+    }
+
+    @Test
+    public void testWrongFile() throws IOException {
+        File file = tempFile();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[100]);
+        out.close();
+        try {
+            DictStore.open(file);
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IOException ex) {
+
+        }
+    }
+
+    private static void corrupt(File file, int offset, int value) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(offset);
+            raf.writeInt(value);
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Test
+    public void testCorruptedHeader() throws IOException {
+        // locale count, then locale table offset
+        for (int[] c : new int[][] { { 16, -1 }, { 16, Integer.MAX_VALUE }, { 20, 3 }, { 20, Integer.MAX_VALUE } }) {
+            File file = tempFile();
+            DictStore.write(DICTS, file);
+            corrupt(file, c[0], c[1]);
+            try {
+                DictStore.open(file);
+                Assert.fail("Shouldn't arrive here!");
+            } catch (IOException ex) {
+
+            }
+        }
+    }
+
+    @Test
+    public void testWrongLocale() throws IOException {
+        File file = tempFile();
+        try {
+            DictStore.write(ImmutableList.of(Dict.of(Locale.ITALIAN, "ciao"), Dict.of(new Locale("it_IT"), "ciao")),
+                    file);
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IllegalArgumentException ex) {
+
+        }
+        Assert.assertFalse(file.exists());
+    }
+}
@@ -0,0 +1,132 @@
+/* 
+ * Copyright 2015 Trento Rise  (trentorise.eu) 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons.test;
+
+import eu.trentorise.opendata.commons.Dict;
+import eu.trentorise.opendata.commons.DictStringPool;
+import eu.trentorise.opendata.commons.TodConfig;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.Assert;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class DictStringPoolTest {
+
+    @BeforeClass
+    public static void setUpClass() {
+        TodConfig.init(DictStringPoolTest.class);
+    }
+
+    @Test
+    public void testPool() {
+        DictStringPool pool = DictStringPool.builder()
+                                            .add(Dict.of(Locale.ITALIAN, "Comune di Trento", "Comune di Rovereto")
+                                                     .with(Locale.ENGLISH, "Municipality of Trento"))
+                                            .add("Comune di Trento")
+                                            .add("")
+                                            .build();
+        assertEquals(4, pool.size());
+        assertEquals(5, pool.addedCount());
+        assertEquals("", pool.get(0));
+        assertEquals("Comune di Rovereto", pool.get(1));
+        assertEquals("Comune di Trento", pool.get(2));
+        assertEquals(2, pool.id("Comune di Trento"));
+        assertEquals(0, pool.id(""));
+        assertEquals(-1, pool.id("Comune"));
+        assertEquals(-1, pool.id("Comune di Trento e"));
+        assertEquals(-1, pool.id("Zzz"));
+        assertTrue(pool.contains("Municipality of Trento"));
+        assertFalse(pool.contains("Municipality"));
+        assertTrue(pool.encodedCharCount() < pool.charCount() + 2 * pool.size());
+
+        try {
+            pool.get(4);
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IndexOutOfBoundsException ex) {
+
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        DictStringPool pool = DictStringPool.builder()
+                                            .build();
+        assertEquals(0, pool.size());
+        assertEquals(-1, pool.id(""));
+        assertEquals(0, pool.stringsFootprint());
+    }
+
+    @Test
+    public void testBlocks() {
+        Random random = new Random(0);
+        TreeSet<String> strings = new TreeSet<String>();
+        for (int i = 0; i < 500; i++) {
+            StringBuilder sb = new StringBuilder("Provincia autonoma di ");
+            int length = random.nextInt(5);
+            for (int j = 0; j < length; j++) {
+                sb.append((char) ('a' + random.nextInt(3)));
+            }
+            strings.add(sb.toString());
+        }
+        // a long string, needing lengths of more than one char
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 40000; i++) {
+            sb.append('x');
+        }
+        strings.add(sb.toString());
+        strings.add(sb.toString() + "y");
+        List<String> sorted = new ArrayList<String>(strings);
+
+        for (int blockSize : new int[] { 1, 3, 16 }) {
+            DictStringPool.Builder builder = DictStringPool.builder(blockSize);
+            List<String> shuffled = new ArrayList<String>(sorted);
+            Collections.shuffle(shuffled, random);
+            for (String s : shuffled) {
+                builder.add(s);
+            }
+            DictStringPool pool = builder.build();
+            assertEquals(blockSize, pool.blockSize());
+            assertEquals(sorted.size(), pool.size());
+            for (int id = 0; id < sorted.size(); id++) {
+                assertEquals(sorted.get(id), pool.get(id));
+                assertEquals(id, pool.id(sorted.get(id)));
+            }
+            assertEquals(-1, pool.id("Provincia autonoma di d"));
+            if (blockSize > 1) {
+                assertTrue(pool.memoryFootprint() < pool.stringsFootprint());
+            }
+        }
+
+        try {
+            DictStringPool.builder(0);
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IllegalArgumentException ex) {
+
+        }
+    }
+}
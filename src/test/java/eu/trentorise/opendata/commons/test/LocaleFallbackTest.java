@@ -0,0 +1,105 @@
+/* 
+ * Copyright 2015 Trento Rise  (trentorise.eu) 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons.test;
+
+import com.google.common.collect.ImmutableList;
+import eu.trentorise.opendata.commons.Dict;
+import eu.trentorise.opendata.commons.LocaleFallback;
+import eu.trentorise.opendata.commons.LocalizedString;
+import eu.trentorise.opendata.commons.TodConfig;
+import java.util.Locale;
+import org.junit.Assert;
+import static org.junit.Assert.assertEquals;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class LocaleFallbackTest {
+
+    private static final Locale IT_IT = Locale.forLanguageTag("it-IT");
+
+    @BeforeClass
+    public static void setUpClass() {
+        TodConfig.init(LocaleFallbackTest.class);
+    }
+
+    @Test
+    public void testTruncation() {
+        assertEquals(ImmutableList.of(Locale.ROOT), LocaleFallback.of().locales());
+        assertEquals(ImmutableList.of(Locale.ROOT), LocaleFallback.of(Locale.ROOT).locales());
+        assertEquals(ImmutableList.of(IT_IT, Locale.ITALIAN, Locale.ENGLISH, Locale.ROOT),
+                LocaleFallback.of(IT_IT, Locale.ENGLISH).locales());
+        assertEquals(ImmutableList.of(IT_IT, Locale.ITALIAN, Locale.ROOT),
+                LocaleFallback.of(IT_IT, Locale.ITALIAN, Locale.ROOT).locales());
+        assertEquals(ImmutableList.of(Locale.forLanguageTag("zh-Hant-TW"), Locale.forLanguageTag("zh-Hant"),
+                Locale.CHINESE, Locale.ROOT),
+                LocaleFallback.of(Locale.forLanguageTag("zh-Hant-TW")).locales());
+        assertEquals(ImmutableList.of(Locale.forLanguageTag("de-DE-x-a"), Locale.forLanguageTag("de-DE"),
+                Locale.GERMAN, Locale.ROOT),
+                LocaleFallback.of(Locale.forLanguageTag("de-DE-x-a")).locales());
+    }
+
+    @Test
+    public void testSome() {
+        LocaleFallback fallback = LocaleFallback.of(IT_IT, Locale.ENGLISH);
+
+        assertEquals(LocalizedString.of(Locale.ITALIAN, "b"),
+                Dict.builder().put(Locale.FRENCH, "a").put(Locale.ITALIAN, "", "b").build().some(fallback));
+        assertEquals(LocalizedString.of(IT_IT, "c"),
+                Dict.builder().put(Locale.ITALIAN, "b").put(IT_IT, "c").build().some(fallback));
+        assertEquals(LocalizedString.of(Locale.ROOT, "d"),
+                Dict.builder().put(Locale.FRENCH, "a").put(Locale.ROOT, "d").build().some(fallback));
+        // as in some(Iterable), defaults to first available string
+        assertEquals(LocalizedString.of(Locale.FRENCH, "a"),
+                Dict.of(Locale.FRENCH, "a").some(fallback));
+        assertEquals(LocalizedString.of(), Dict.of().some(fallback));
+
+        Dict dict = Dict.builder().put(Locale.GERMAN, "g").put(Locale.ENGLISH, "e").build();
+        assertEquals(dict.some(fallback.locales()), dict.some(fallback));
+    }
+
+    @Test
+    public void testSomeAll() {
+        LocaleFallback fallback = LocaleFallback.of(Locale.ITALIAN);
+        assertEquals(ImmutableList.of(LocalizedString.of(Locale.ITALIAN, "a"), LocalizedString.of()),
+                Dict.someAll(ImmutableList.of(Dict.of(Locale.ITALIAN, "a"), Dict.of()), fallback));
+    }
+
+    @Test
+    public void testEquals() {
+        assertEquals(LocaleFallback.of(IT_IT), LocaleFallback.of(IT_IT, Locale.ITALIAN));
+        assertEquals(LocaleFallback.of(IT_IT).hashCode(), LocaleFallback.of(IT_IT, Locale.ITALIAN).hashCode());
+    }
+
+    @Test
+    public void testNullHostility() {
+        try {
+            LocaleFallback.of((Locale) null);
+            Assert.fail("Shouldn't arrive here!");
+        } catch (NullPointerException ex) {
+
+        }
+        try {
+            Dict.of().some((LocaleFallback) null);
+            Assert.fail("Shouldn't arrive here!");
+        } catch (NullPointerException ex) {
+
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/* 
+ * Copyright 2015 Trento Rise  (trentorise.eu) 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons.test;
+
+import eu.trentorise.opendata.commons.Dict;
+import eu.trentorise.opendata.commons.LocaleRegistry;
+import eu.trentorise.opendata.commons.TodConfig;
+import eu.trentorise.opendata.commons.TodUtils;
+import java.util.Locale;
+import org.junit.Assert;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class LocaleRegistryTest {
+
+    @BeforeClass
+    public static void setUpClass() {
+        TodConfig.init(LocaleRegistryTest.class);
+    }
+
+    @Test
+    public void testWellKnownIds() {
+        assertEquals(LocaleRegistry.ROOT_ID, LocaleRegistry.id(Locale.ROOT));
+        assertEquals(LocaleRegistry.ENGLISH_ID, LocaleRegistry.id(Locale.ENGLISH));
+        assertTrue(Locale.ROOT == LocaleRegistry.locale(LocaleRegistry.ROOT_ID));
+    }
+
+    @Test
+    public void testIntern() {
+        Locale loc1 = new Locale("it", "IT");
+        Locale loc2 = new Locale("it", "IT");
+        Locale interned = LocaleRegistry.intern(loc1);
+        assertTrue(interned == LocaleRegistry.intern(loc2));
+        assertEquals(LocaleRegistry.id(loc1), LocaleRegistry.id(loc2));
+        assertEquals(loc1, LocaleRegistry.locale(LocaleRegistry.id(loc2)));
+        assertTrue(interned == TodUtils.languageTagToLocale("it-IT"));
+    }
+
+    @Test
+    public void testParsingDoesntRegister() {
+        int size = LocaleRegistry.size();
+        assertEquals(new Locale("xx", "YY"), TodUtils.languageTagToLocale("xx-YY"));
+        assertEquals(-1, LocaleRegistry.idIfPresent(new Locale("xx", "YY")));
+        assertEquals(size, LocaleRegistry.size());
+
+        // registered tags give the canonical instance
+        Locale canonical = LocaleRegistry.intern(new Locale("xx", "ZZ"));
+        assertTrue(canonical == TodUtils.languageTagToLocale("xx-ZZ"));
+        assertEquals(size + 1, LocaleRegistry.size());
+    }
+
+    @Test
+    public void testGrowth() {
+        int size = LocaleRegistry.size();
+        for (int i = 0; i < 100; i++) {
+            Locale locale = new Locale("xx", "", "growth" + i);
+            assertEquals(size + i, LocaleRegistry.id(locale));
+            assertTrue(locale == LocaleRegistry.locale(size + i));
+        }
+        assertEquals(size + 100, LocaleRegistry.size());
+    }
+
+    @Test
+    public void testIdIfPresent() {
+        Dict dict = Dict.of(Locale.ITALIAN, "a");
+        int size = LocaleRegistry.size();
+        assertEquals(-1, LocaleRegistry.idIfPresent(new Locale("xx", "YY", "never-seen")));
+        assertEquals(size, LocaleRegistry.size());
+
+        // querying a dict shouldn't register locales
+        dict.get(new Locale("xx", "ZZ", "never-seen"));
+        assertEquals(size, LocaleRegistry.size());
+    }
+
+    @Test
+    public void testWrongId() {
+        try {
+            LocaleRegistry.locale(-1);
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IndexOutOfBoundsException ex) {
+
+        }
+
+        try {
+            LocaleRegistry.locale(LocaleRegistry.size());
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IndexOutOfBoundsException ex) {
+
+        }
+    }
+}
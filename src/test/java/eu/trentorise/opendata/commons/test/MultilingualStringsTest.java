@@ -19,10 +19,21 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import eu.trentorise.opendata.commons.Dict;
+import eu.trentorise.opendata.commons.DictEntryConsumer;
 import eu.trentorise.opendata.commons.LocalizedString;
 import eu.trentorise.opendata.commons.TodConfig;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import org.junit.Assert;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -143,6 +154,118 @@ public class MultilingualStringsTest {
         
     }
     
+    @Test
+    public void testMultimap(){
+        Dict dict = Dict.builder()
+                .put(Locale.ITALIAN, "a", "b")
+                .put(Locale.ENGLISH, "c")
+                .put(Locale.ITALIAN, "d")
+                .build();
+        
+        assertEquals(ImmutableList.of("a", "b", "d"), dict.asMultimap().get(Locale.ITALIAN));
+        assertEquals(ImmutableList.of(Locale.ITALIAN, Locale.ENGLISH), dict.locales().asList());
+        assertTrue(dict.asMultimap() == dict.asMultimap());
+        assertEquals(ImmutableList.of("a", "b", "d"), dict.get(Locale.ITALIAN));
+        assertEquals("c", dict.str(Locale.ENGLISH));
+        
+        // same hash as when Dict was backed by a multimap
+        assertEquals(7 * 53 + dict.asMultimap().hashCode(), dict.hashCode());
+        
+        assertTrue(Dict.of(Locale.ITALIAN).locales().isEmpty());
+        assertEquals(Dict.of(), Dict.of(Locale.ITALIAN));
+    }
+    
+    private static byte[] serialize(Object obj) throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bos);
+        oos.writeObject(obj);
+        oos.close();
+        return bos.toByteArray();
+    }
+    
+    private static Object deserialize(byte[] bytes) throws Exception {
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        return ois.readObject();
+    }
+    
+    @Test
+    public void testSerialization() throws Exception {
+        Dict dict = Dict.builder()
+                .put(Locale.ITALIAN, "a", "b")
+                .put(new Locale("de", "AT"), "c")
+                .put(Locale.forLanguageTag("zh-Hant-TW"), "\u4e2d\u6587", "")
+                .put(Locale.ROOT, "\u0000 \ud83d\ude00 \ud800 Citt\u00e0")
+                .build();
+        
+        Dict read = (Dict) deserialize(serialize(dict));
+        assertEquals(dict, read);
+        assertEquals(ImmutableList.of("a", "b"), read.get(Locale.ITALIAN));
+        assertEquals(dict.locales().asList(), read.locales().asList());
+        
+        assertTrue(Dict.of() == deserialize(serialize(Dict.of())));
+        
+        LocalizedString ls = LocalizedString.of(Locale.ITALIAN, "ciao");
+        assertEquals(ls, deserialize(serialize(ls)));
+        assertEquals(LocalizedString.of(), deserialize(serialize(LocalizedString.of())));
+    }
+    
+    @Test
+    public void testSerializationIllFormedLocale() throws Exception {
+        Dict dict = Dict.of(new Locale("it_IT"), "x")
+                        .with(Locale.ROOT, "y")
+                        .with(new Locale("xx", "YY", "a b"), "z");
+        assertEquals(dict, deserialize(serialize(dict)));
+        
+        LocalizedString ls = LocalizedString.of(new Locale("it_IT"), "x");
+        assertEquals(ls, deserialize(serialize(ls)));
+    }
+    
+    @Test
+    public void testSerializationHugeLength() throws Exception {
+        byte[] bytes = serialize(Dict.of("zz"));
+        // string char count 2 becomes 2^31 - 1, block data length grows by 4
+        int pos = -1;
+        for (int i = 0; i + 2 < bytes.length; i++) {
+            if (bytes[i] == 2 && bytes[i + 1] == 'z' && bytes[i + 2] == 'z') {
+                pos = i;
+            }
+        }
+        int block = -1;
+        for (int i = 0; i + 3 < pos; i++) {
+            if (bytes[i] == 0x77 && bytes[i + 2] == 1 && bytes[i + 3] == 1) {
+                block = i;
+            }
+        }
+        assertTrue(pos > 0 && block >= 0);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        bos.write(bytes, 0, pos);
+        bos.write(new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 });
+        bos.write(bytes, pos + 1, bytes.length - pos - 1);
+        byte[] corrupted = bos.toByteArray();
+        corrupted[block + 1] += 4;
+        try {
+            deserialize(corrupted);
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IOException ex) {
+
+        }
+    }
+    
+    @Test
+    public void testSerializationSize() throws Exception {
+        Dict dict = Dict.builder()
+                .put(Locale.ITALIAN, "Comune di Trento")
+                .put(Locale.ENGLISH, "Municipality of Trento")
+                .build();
+        
+        // previous form was the multimap object graph
+        int dictSize = serialize(dict).length;
+        assertTrue(dictSize * 2 < serialize(dict.asMultimap()).length);
+        
+        LocalizedString ls = LocalizedString.of(Locale.ITALIAN, "Comune di Trento");
+        assertTrue(serialize(ls).length * 2 < serialize(new Object[] { ls.loc(), ls.str() }).length);
+    }
+    
     @Test
     public void testNonEmpty(){
         Dict dict = Dict.builder().put(Locale.FRENCH, "", "a").build();
@@ -158,6 +281,210 @@ public class MultilingualStringsTest {
         assertEquals(Dict.of("a").with(Locale.ITALIAN, "b"), Dict.of(Locale.ITALIAN, "b").with("a"));
         assertNotEquals(Dict.of(Locale.ENGLISH, "a").with(Locale.ITALIAN, "b"), Dict.of(Locale.ITALIAN, "b").with("a"));
     }
+    @Test
+    public void testContains(){
+        Dict dict = Dict.builder()
+                .put(Locale.ITALIAN, "Città", "Dati")
+                .put(Locale.ENGLISH, "Data")
+                .put(new Locale("tr"), "ISPARTA")
+                .build();
+        
+        for (int i = 0; i < 2; i++){ // second time uses cached lowercased strings
+            assertTrue(dict.contains("CITT"));
+            assertTrue(dict.contains("ati"));
+            assertTrue(dict.contains("DATA"));
+            assertTrue(dict.contains("ısp")); // turkish dotless i
+            assertFalse(dict.contains("isp"));
+            assertFalse(dict.contains("x"));
+            assertTrue(dict.contains(""));
+        }
+        assertFalse(Dict.of().contains(""));
+    }
+    
+    @Test
+    public void testWithSharesStrings(){
+        Dict dict = Dict.of(Locale.ITALIAN, "a", "b").with(Locale.ENGLISH, "c");
+        
+        Dict dict2 = dict.with(Locale.FRENCH, "d");
+        assertTrue(dict.get(Locale.ITALIAN) == dict2.get(Locale.ITALIAN));
+        assertTrue(dict.get(Locale.ENGLISH) == dict2.get(Locale.ENGLISH));
+        
+        Dict dict3 = dict.with(Locale.ENGLISH, "e");
+        assertTrue(dict.get(Locale.ITALIAN) == dict3.get(Locale.ITALIAN));
+        assertEquals(ImmutableList.of("c"), dict.get(Locale.ENGLISH));
+        assertEquals(ImmutableList.of("c", "e"), dict3.get(Locale.ENGLISH));
+        
+        Dict merged = Dict.ofDicts(dict, Dict.of(Locale.GERMAN, "f"));
+        assertTrue(dict.get(Locale.ITALIAN) == merged.get(Locale.ITALIAN));
+        
+        assertTrue(dict == dict.with(Locale.ITALIAN));
+        assertTrue(dict == dict.with(Dict.of()));
+        assertEquals(ImmutableList.of(Locale.ITALIAN, Locale.ENGLISH, Locale.FRENCH), 
+                     dict2.locales().asList());
+    }
+
+    @Test
+    public void testAppendTo() throws IOException {
+        Dict dict = Dict.builder()
+                        .put(Locale.ITALIAN, "a", "b")
+                        .put(Locale.forLanguageTag("zh-Hant-TW"), "c")
+                        .build();
+        assertEquals("\n{\n        it: [a, b]\nzh_TW_#H...: [c]\n}\n\n", dict.toString());
+        StringBuilder sb = new StringBuilder("x");
+        assertTrue(sb == dict.appendTo(sb));
+        assertEquals("x" + dict, sb.toString());
+        StringWriter writer = new StringWriter();
+        Dict.of().appendTo(writer);
+        assertEquals("\n{\n}\n\n", writer.toString());
+
+        LocalizedString ls = LocalizedString.of(Locale.ITALIAN, "ciao");
+        assertEquals("LocalizedString{locale=it, string=ciao}", ls.toString());
+        assertEquals("xLocalizedString{locale=it, string=ciao}", ls.appendTo(new StringBuilder("x")).toString());
+    }
+
+    @Test
+    public void testOfDicts(){
+        assertEquals(Dict.of(), Dict.ofDicts());
+        Dict dict = Dict.of(Locale.ITALIAN, "a");
+        assertTrue(dict == Dict.ofDicts(dict));
+        Dict merged = Dict.ofDicts(Dict.of(Locale.ITALIAN, "a"),
+                                   Dict.of(),
+                                   Dict.builder().put(Locale.ENGLISH, "b").put(Locale.ITALIAN, "c", "d").build(),
+                                   Dict.of(Locale.FRENCH, "e"));
+        assertEquals(ImmutableList.of(Locale.ITALIAN, Locale.ENGLISH, Locale.FRENCH), merged.locales().asList());
+        assertEquals(ImmutableList.of("a", "c", "d"), merged.get(Locale.ITALIAN));
+    }
+
+    @Test
+    public void testOfDictsParallel(){
+        Locale[] locales = {Locale.ITALIAN, Locale.ENGLISH, Locale.FRENCH, Locale.GERMAN, Locale.ROOT};
+        Random random = new Random(0);
+        List<Dict> dicts = new ArrayList<Dict>();
+        Dict.Builder expectedb = Dict.builder();
+        for (int i = 0; i < 20000; i++) {
+            Dict.Builder dictb = Dict.builder();
+            // german only appears once
+            Locale locale = i == 15000 ? Locale.GERMAN : locales[random.nextInt(3)];
+            dictb.put(locale, "s" + i);
+            if (random.nextBoolean()){
+                dictb.put(Locale.ROOT, "r" + i);
+            }
+            Dict dict = dictb.build();
+            dicts.add(dict);
+            expectedb.put(dict);
+        }
+        Dict expected = expectedb.build();
+        assertEquals(expected, Dict.ofDicts(dicts));
+        assertEquals(expected.locales().asList(), Dict.ofDicts(dicts).locales().asList());
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Dict merged = Dict.ofDicts(dicts, pool);
+            assertEquals(expected, merged);
+            assertEquals(expected.locales().asList(), merged.locales().asList());
+            assertTrue(dicts.get(15000).get(Locale.GERMAN) == merged.get(Locale.GERMAN));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testBuilderReset(){
+        Dict.Builder builder = Dict.builder(1, 1);
+        Dict dict1 = builder.put(Locale.ITALIAN, "a", "b")
+                            .put(Locale.ENGLISH, "c")
+                            .put(Locale.FRENCH, "d")
+                            .build();
+        assertEquals(ImmutableList.of("a", "b"), dict1.get(Locale.ITALIAN));
+        assertEquals(ImmutableList.of(Locale.ITALIAN, Locale.ENGLISH, Locale.FRENCH), dict1.locales().asList());
+
+        Dict dict2 = builder.reset()
+                            .put(Dict.of(Locale.ENGLISH, "e"))
+                            .put(Locale.ITALIAN, "f")
+                            .build();
+        assertEquals(ImmutableList.of(Locale.ENGLISH, Locale.ITALIAN), dict2.locales().asList());
+        assertEquals(ImmutableList.of("f"), dict2.get(Locale.ITALIAN));
+        // built dicts don't change with the builder
+        builder.reset().put(Locale.ITALIAN, "g");
+        assertEquals(ImmutableList.of("a", "b"), dict1.get(Locale.ITALIAN));
+        assertEquals(ImmutableList.of("f"), dict2.get(Locale.ITALIAN));
+        assertEquals(Dict.of(Locale.ITALIAN, "g"), builder.build());
+        assertEquals(Dict.of(), builder.reset().build());
+
+        try {
+            Dict.builder(-1, 1);
+            Assert.fail("Should not arrive here!");
+        } catch(IllegalArgumentException ex){
+
+        }
+    }
+
+    @Test
+    public void testForEach(){
+        Dict dict = Dict.of(Locale.ITALIAN, "a", "b")
+                        .with(Locale.ENGLISH, "c");
+        final List<LocalizedString> visited = new ArrayList<LocalizedString>();
+        final List<Integer> indexes = new ArrayList<Integer>();
+        dict.forEach(new DictEntryConsumer() {
+            @Override
+            public void accept(Locale locale, int index, String string) {
+                visited.add(LocalizedString.of(locale, string));
+                indexes.add(index);
+            }
+        });
+        assertEquals(dict.asLocalizedStrings(), visited);
+        assertEquals(Arrays.asList(0, 1, 0), indexes);
+
+        Dict.of().forEach(new DictEntryConsumer() {
+            @Override
+            public void accept(Locale locale, int index, String string) {
+                Assert.fail("Shouldn't arrive here!");
+            }
+        });
+    }
+
+    @Test
+    public void testBuilderNormalizing(){
+        String composed = "Citt\u00e0";
+        String decomposed = "Citta\u0300";
+        Dict dict = Dict.builder()
+                        .normalizing()
+                        .put(Locale.ITALIAN, " " + decomposed + "\n", composed, "\u00a0a  b ")
+                        .put(Locale.ENGLISH, Arrays.asList("\tcity"))
+                        .build();
+        assertEquals(ImmutableList.of(composed, composed, "a  b"), dict.get(Locale.ITALIAN));
+        assertEquals(ImmutableList.of("city"), dict.get(Locale.ENGLISH));
+        assertEquals(Dict.of(Locale.ITALIAN, composed, composed, "a  b")
+                         .with(Locale.ENGLISH, "city"),
+                dict);
+
+        // already normalized strings are kept as they are
+        Dict normalized = Dict.of(Locale.ITALIAN, composed);
+        Dict rebuilt = Dict.builder()
+                           .normalizing()
+                           .put(normalized)
+                           .build();
+        assertTrue(normalized.get(Locale.ITALIAN) == rebuilt.get(Locale.ITALIAN));
+
+        assertEquals(Dict.of(Locale.ITALIAN, composed, ""), Dict.builder()
+                                                               .normalizing()
+                                                               .put(Dict.of(Locale.ITALIAN, decomposed + " ", " "))
+                                                               .build());
+
+        // mode survives resets, and is off by default
+        Dict.Builder builder = Dict.builder()
+                                   .normalizing();
+        builder.build();
+        assertEquals(ImmutableList.of("a"), builder.reset()
+                                                   .put(Locale.ITALIAN, " a")
+                                                   .build()
+                                                   .get(Locale.ITALIAN));
+        assertEquals(ImmutableList.of(" a"), Dict.builder()
+                                                 .put(Locale.ITALIAN, " a")
+                                                 .build()
+                                                 .get(Locale.ITALIAN));
+    }
+
     @Test
     public void testNullHostility(){
         
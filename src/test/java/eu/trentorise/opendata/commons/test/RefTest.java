@@ -64,4 +64,29 @@ public class RefTest {
         
         
     }
+
+    @Test
+    public void testAppendUriTo() {
+        StringBuilder sb = new StringBuilder("x:");
+        Ref.builder()
+           .setDocumentId("a")
+           .setTracePath("b")
+           .build()
+           .appendUriTo(sb);
+        assertEquals("x:a#b", sb.toString());
+        for (Ref ref : new Ref[] { Ref.ofPath("a"), Ref.ofDocumentId("a"), Ref.builder()
+                                                                            .setDocumentId("a")
+                                                                            .setTracePath("*")
+                                                                            .build() }) {
+            assertEquals(ref.uri(), ref.appendUriTo(new StringBuilder())
+                                       .toString());
+        }
+        try {
+            Ref.of()
+               .appendUriTo(new StringBuilder());
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IllegalStateException ex) {
+
+        }
+    }
 }
@@ -0,0 +1,169 @@
+/* 
+ * Copyright 2015 Trento Rise  (trentorise.eu) 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.commons.test;
+
+import com.google.common.collect.ImmutableList;
+import eu.trentorise.opendata.commons.Dict;
+import eu.trentorise.opendata.commons.TodConfig;
+import eu.trentorise.opendata.commons.Utf8Dict;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import org.junit.Assert;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class Utf8DictTest {
+
+    @BeforeClass
+    public static void setUpClass() {
+        TodConfig.init(Utf8DictTest.class);
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        Utf8Dict dict = Utf8Dict.of(Dict.of());
+        assertTrue(dict.isEmpty());
+        assertEquals(Utf8Dict.of(), dict);
+        assertEquals("", dict.str(Locale.ITALIAN));
+        assertEquals(0, dict.count(Locale.ITALIAN));
+        assertEquals(0, dict.utf8Length(Locale.ITALIAN));
+        assertTrue(dict.get(Locale.ITALIAN)
+                       .isEmpty());
+        assertEquals(Dict.of(), dict.toDict());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        dict.writeUtf8To(Locale.ITALIAN, out);
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    public void testIsEmpty() {
+        Dict dict = Dict.of(Locale.ITALIAN, "", "");
+        assertEquals(dict.isEmpty(), Utf8Dict.of(dict)
+                                             .isEmpty());
+        assertFalse(Utf8Dict.of(dict.with(Locale.ENGLISH, "a"))
+                            .isEmpty());
+    }
+
+    @Test
+    public void testSurrogates() {
+        Dict dict = Dict.of(Locale.ROOT, "\ud83d\ude00");
+        assertEquals(dict, Utf8Dict.of(dict)
+                                   .toDict());
+        try {
+            Utf8Dict.of(Dict.of(Locale.ROOT, "a \ud800"));
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IllegalArgumentException ex) {
+
+        }
+        try {
+            Utf8Dict.of(Dict.of(Locale.ROOT, "\ude00\ud83d"));
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IllegalArgumentException ex) {
+
+        }
+    }
+
+    @Test
+    public void testDecode() {
+        Dict dict = Dict.of(Locale.ITALIAN, "Città di Trento", "Trient")
+                        .with(Locale.ENGLISH, "")
+                        .with(Locale.CHINESE, "特伦托");
+        Utf8Dict utf8 = Utf8Dict.of(dict);
+        assertFalse(utf8.isEmpty());
+        assertEquals(dict.locales(), utf8.locales());
+        assertEquals("Città di Trento", utf8.str(Locale.ITALIAN));
+        assertEquals(ImmutableList.of("Città di Trento", "Trient"), utf8.get(Locale.ITALIAN));
+        assertEquals(2, utf8.count(Locale.ITALIAN));
+        assertEquals("", utf8.str(Locale.ENGLISH));
+        assertEquals("特伦托", utf8.str(Locale.CHINESE));
+        assertEquals("", utf8.str(Locale.GERMAN));
+        assertEquals(dict, utf8.toDict());
+        assertEquals(dict.toString(), utf8.toString());
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        Utf8Dict dict = Utf8Dict.of(Dict.of(Locale.ITALIAN, "Città", "Trento")
+                                        .with(Locale.CHINESE, "特伦托"));
+        byte[] expected = "Città".getBytes("UTF-8");
+        assertEquals(expected.length, dict.utf8Length(Locale.ITALIAN));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        dict.writeUtf8To(Locale.ITALIAN, out);
+        assertArrayEquals(expected, out.toByteArray());
+
+        out.reset();
+        dict.writeUtf8To(Locale.ITALIAN, 1, out);
+        assertArrayEquals("Trento".getBytes("UTF-8"), out.toByteArray());
+
+        ByteBuffer buffer = ByteBuffer.allocate(9);
+        dict.writeUtf8To(Locale.CHINESE, buffer);
+        assertEquals(9, buffer.position());
+        assertArrayEquals("特伦托".getBytes("UTF-8"), buffer.array());
+
+        try {
+            dict.writeUtf8To(Locale.ITALIAN, buffer);
+            Assert.fail("Shouldn't arrive here!");
+        } catch (BufferOverflowException ex) {
+
+        }
+
+        try {
+            dict.writeUtf8To(Locale.ITALIAN, 2, out);
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IndexOutOfBoundsException ex) {
+
+        }
+
+        try {
+            dict.writeUtf8To(Locale.GERMAN, 0, out);
+            Assert.fail("Shouldn't arrive here!");
+        } catch (IndexOutOfBoundsException ex) {
+
+        }
+    }
+
+    @Test
+    public void testEquals() {
+        Utf8Dict dict1 = Utf8Dict.of(Dict.of(Locale.ITALIAN, "a", "b")
+                                         .with(Locale.ENGLISH, "c"));
+        Utf8Dict dict2 = Utf8Dict.of(Dict.of(Locale.ENGLISH, "c")
+                                         .with(Locale.ITALIAN, "a", "b"));
+        assertEquals(dict1, dict2);
+        assertEquals(dict1.hashCode(), dict2.hashCode());
+        assertFalse(dict1.equals(Utf8Dict.of(Dict.of(Locale.ITALIAN, "ab")
+                                                 .with(Locale.ENGLISH, "c"))));
+        assertFalse(dict1.equals(Utf8Dict.of(Dict.of(Locale.ITALIAN, "a", "b"))));
+    }
+
+    @Test
+    public void testMemoryFootprint() {
+        assertTrue(Utf8Dict.of(Dict.of(Locale.ITALIAN, "Trento"))
+                           .memoryFootprint() > 0);
+    }
+}
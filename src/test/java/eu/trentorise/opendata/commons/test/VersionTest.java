@@ -17,6 +17,8 @@ package eu.trentorise.opendata.commons.test;
 
 import eu.trentorise.opendata.commons.TodConfig;
 import eu.trentorise.opendata.commons.SemVersion;
+import java.io.IOException;
+import java.io.StringWriter;
 import org.junit.Assert;
 import static org.junit.Assert.assertEquals;
 import org.junit.BeforeClass;
@@ -64,4 +66,16 @@ public class VersionTest {
             
         }
     }
+
+    @Test
+    public void testAppendTo() throws IOException {
+        StringBuilder sb = new StringBuilder("v");
+        SemVersion.of("1.2.3-bla").appendTo(sb);
+        assertEquals("v1.2.3-bla", sb.toString());
+
+        StringWriter writer = new StringWriter();
+        SemVersion.of("10.0.1").appendTo(writer);
+        SemVersion.of("1.2.3-bla").appendTo(writer);
+        assertEquals("10.0.11.2.3-bla", writer.toString());
+    }
 }